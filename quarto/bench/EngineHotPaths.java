@@ -0,0 +1,108 @@
+import java.util.Random;
+
+import bench.Engine;
+
+/*
+ * Implements bench.Engine for the JMH benchmarks, see there why the
+ * benchmarks cannot call the engine directly.
+ */
+public class EngineHotPaths implements Engine {
+
+	public Object readBoard(String stateFileName) {
+		return new QuartoBoard(QuartoBitBoard.NUMBER_OF_ROWS, QuartoBitBoard.NUMBER_OF_COLUMNS,
+				QuartoBitBoard.NUMBER_OF_PIECES, stateFileName);
+	}
+
+	/*
+	 * fills the squares in a random order, each with a random piece that
+	 * 	does not win there, and starts over when no unplayed piece fits the
+	 * 	next square
+	 */
+	public Object drawnBoard(long seed) {
+		Random random = new Random(seed);
+		QuartoBitBoard board = new QuartoBitBoard();
+		while (!board.checkIfBoardIsFull()) {
+			int empty = board.getEmptySquares();
+			int square = QuartoBitBoard.nthSetBit(empty, random.nextInt(Integer.bitCount(empty)));
+			int pieces = board.getUnplayedPieces() & ~board.getWinningPieces(square);
+			if (pieces == 0) {
+				board = new QuartoBitBoard();
+				continue;
+			}
+			board.insertPieceOnSquare(square, QuartoBitBoard.nthSetBit(pieces, random.nextInt(Integer.bitCount(pieces))));
+		}
+		return board.toQuartoBoard();
+	}
+
+	public Object toBitBoard(Object board) {
+		return new QuartoBitBoard((QuartoBoard) board);
+	}
+
+	public Object copyBoard(Object board) {
+		return new QuartoBoard((QuartoBoard) board);
+	}
+
+	public Object copyBitBoard(Object bitBoard) {
+		return new QuartoBitBoard((QuartoBitBoard) bitBoard);
+	}
+
+	public boolean checkRows(Object board) {
+		QuartoBoard quartoBoard = (QuartoBoard) board;
+		boolean win = false;
+		for (int row = 0; row < quartoBoard.getNumberOfRows(); row++) {
+			win |= quartoBoard.checkRow(row);
+		}
+		return win;
+	}
+
+	public boolean checkColumns(Object board) {
+		QuartoBoard quartoBoard = (QuartoBoard) board;
+		boolean win = false;
+		for (int column = 0; column < quartoBoard.getNumberOfColumns(); column++) {
+			win |= quartoBoard.checkColumn(column);
+		}
+		return win;
+	}
+
+	public boolean checkDiagonals(Object board) {
+		return ((QuartoBoard) board).checkDiagonals();
+	}
+
+	public boolean checkBitBoardLines(Object bitBoard) {
+		QuartoBitBoard board = (QuartoBitBoard) bitBoard;
+		boolean win = board.checkDiagonals();
+		for (int i = 0; i < QuartoBitBoard.NUMBER_OF_ROWS; i++) {
+			win |= board.checkRow(i) | board.checkColumn(i);
+		}
+		return win;
+	}
+
+	public Object newSearch(int timeLimit, boolean symmetry, boolean heavyPlayouts) {
+		MonteCarlo search = new MonteCarlo(timeLimit, 1 / Math.sqrt(2), symmetry);
+		search.setHeavyPlayouts(heavyPlayouts);
+		return search;
+	}
+
+	public int playGame(Object search, Object bitBoard, int piece) {
+		return ((MonteCarlo) search).playGame((QuartoBitBoard) bitBoard, piece, true);
+	}
+
+	public Object getPossibleMoves(Object board, int piece) {
+		return MonteCarlo.getPossibleMoves((QuartoBoard) board, piece);
+	}
+
+	public Object getPossibleBitBoardMoves(Object bitBoard, int piece, boolean attributeSymmetry) {
+		return MonteCarlo.getPossibleMoves((QuartoBitBoard) bitBoard, piece, attributeSymmetry);
+	}
+
+	public Object findSymmetricBoards(Object board) {
+		return MonteCarlo.findSymmetricBoards((QuartoBoard) board);
+	}
+
+	public long search(Object search, Object bitBoard, int piece) {
+		MonteCarlo monteCarlo = (MonteCarlo) search;
+		monteCarlo.UCTSearch((QuartoBitBoard) bitBoard, piece);
+		return monteCarlo.getIterations();
+	}
+
+}
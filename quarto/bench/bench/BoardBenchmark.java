@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Copying a board and checking its lines for a win, on QuartoBoard and on
+ * QuartoBitBoard. The line checks run on the drawn board, the worst case
+ * for QuartoBoard since no line has an empty square to stop at.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Benchmark
+	public Object copyBoard(Position position) {
+		return position.engine.copyBoard(position.board);
+	}
+
+	@Benchmark
+	public Object copyBitBoard(Position position) {
+		return position.engine.copyBitBoard(position.bitBoard);
+	}
+
+	@Benchmark
+	public boolean checkRows(Position position) {
+		return position.engine.checkRows(position.drawnBoard);
+	}
+
+	@Benchmark
+	public boolean checkColumns(Position position) {
+		return position.engine.checkColumns(position.drawnBoard);
+	}
+
+	@Benchmark
+	public boolean checkDiagonals(Position position) {
+		return position.engine.checkDiagonals(position.drawnBoard);
+	}
+
+	// every row, column and diagonal, compare with the sum of the three above
+	@Benchmark
+	public boolean checkBitBoardLines(Position position) {
+		return position.engine.checkBitBoardLines(position.drawnBitBoard);
+	}
+
+}
@@ -0,0 +1,77 @@
+package bench;
+
+/*
+ * The engine calls the benchmarks measure.
+ *
+ * JMH only accepts benchmarks in a named package, and a class in a named
+ * package cannot refer to the engine classes in the default package. So the
+ * benchmarks call the engine through this interface, which EngineHotPaths
+ * implements next to the engine. Boards and searches are passed as Object:
+ * 		board		a QuartoBoard
+ * 		bitBoard	a QuartoBitBoard
+ * 		search		a MonteCarlo
+ * Every call does exactly what its name says plus a cast, and a benchmark
+ * only ever sees one implementation, so the JIT inlines the calls away.
+ */
+public interface Engine {
+
+	// the QuartoBoard read from a state file like src/state.quarto
+	Object readBoard(String stateFileName);
+
+	// a full QuartoBoard without a winning line, so every line check reads all five squares
+	Object drawnBoard(long seed);
+
+	Object toBitBoard(Object board);
+
+	Object copyBoard(Object board);
+
+	Object copyBitBoard(Object bitBoard);
+
+	// checkRow of every row
+	boolean checkRows(Object board);
+
+	// checkColumn of every column
+	boolean checkColumns(Object board);
+
+	boolean checkDiagonals(Object board);
+
+	// checkRow, checkColumn and checkDiagonals of the QuartoBitBoard
+	boolean checkBitBoardLines(Object bitBoard);
+
+	// a single threaded MonteCarlo without solvers, searching for timeLimit milliseconds
+	Object newSearch(int timeLimit, boolean symmetry, boolean heavyPlayouts);
+
+	// MonteCarlo.playGame, one playout from bitBoard with piece to place
+	int playGame(Object search, Object bitBoard, int piece);
+
+	// MonteCarlo.getPossibleMoves(board, piece), the moves left after removing symmetric boards
+	Object getPossibleMoves(Object board, int piece);
+
+	// MonteCarlo.getPossibleMoves(bitBoard, piece, attributeSymmetry)
+	Object getPossibleBitBoardMoves(Object bitBoard, int piece, boolean attributeSymmetry);
+
+	Object findSymmetricBoards(Object board);
+
+	// MonteCarlo.UCTSearch, returns the number of iterations it ran
+	long search(Object search, Object bitBoard, int piece);
+
+	public static final class Loader {
+
+		private static Engine engine;
+
+		private Loader() {
+		}
+
+		public static synchronized Engine get() {
+			if (engine == null) {
+				try {
+					engine = (Engine) Class.forName("EngineHotPaths").getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException("EngineHotPaths is not on the class path", e);
+				}
+			}
+			return engine;
+		}
+	}
+
+}
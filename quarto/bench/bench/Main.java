@@ -0,0 +1,40 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/*
+ * The main class of benchmarks.jar: runs JMH with the usual command line,
+ * always with the GC profiler, so every result comes with its allocation
+ * rate (gc.alloc.rate.norm is the bytes allocated per operation).
+ *
+ * 		java -jar target/benchmarks.jar					every benchmark
+ * 		java -jar target/benchmarks.jar Board -f 2		the board benchmarks with two forks
+ * 		java -jar target/benchmarks.jar -h				the JMH options
+ */
+public class Main {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+				|| options.shouldListProfilers() || options.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(options);
+		boolean gc = false;
+		for (ProfilerConfig profiler : options.getProfilers()) {
+			gc |= profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName());
+		}
+		if (!gc) {
+			builder.addProfiler(GCProfiler.class);
+		}
+		new Runner(builder.build()).run();
+	}
+
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Playouts per second of MonteCarlo.playGame from the state.quarto
+ * position, light and heavy. The playout engine is not thread safe, so
+ * every benchmark thread has its own MonteCarlo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayoutBenchmark {
+
+	@Param({"false", "true"})
+	public boolean heavy;
+
+	private Object search;
+
+	@Setup
+	public void setUp(Position position) {
+		search = position.engine.newSearch(0, false, heavy);
+	}
+
+	@Benchmark
+	public int playGame(Position position) {
+		return position.engine.playGame(search, position.bitBoard, position.piece);
+	}
+
+}
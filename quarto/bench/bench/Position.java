@@ -0,0 +1,39 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * The positions the benchmarks run on: the committed state.quarto position
+ * with piece to place, and a full board without a winning line, on which
+ * the line checks cannot stop early. Both are kept as a QuartoBoard and as
+ * a QuartoBitBoard. The benchmarks only read them.
+ */
+@State(Scope.Benchmark)
+public class Position {
+
+	@Param("src/state.quarto")
+	public String stateFile;
+
+	// an unplayed piece of the state file
+	@Param("3")
+	public int piece;
+
+	public Engine engine;
+	public Object board;
+	public Object bitBoard;
+	public Object drawnBoard;
+	public Object drawnBitBoard;
+
+	@Setup
+	public void setUp() {
+		engine = Engine.Loader.get();
+		board = engine.readBoard(stateFile);
+		bitBoard = engine.toBitBoard(board);
+		drawnBoard = engine.drawnBoard(4725);
+		drawnBitBoard = engine.toBitBoard(drawnBoard);
+	}
+
+}
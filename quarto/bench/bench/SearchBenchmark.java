@@ -0,0 +1,83 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Full UCTSearch calls on the state.quarto position. A search runs for a
+ * fixed time, so the calls per second say little; the iterations counter
+ * is the number of iterations per second (selection, expansion, playout
+ * and backup), reported as UCTSearch:iterations.
+ *
+ * Each call starts a new MonteCarlo, so no search continues the tree kept
+ * by the one before. The tree UCTSearch prints after every search is
+ * thrown away.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+	@Param("100")
+	public int timeLimit;
+
+	@Param({"false", "true"})
+	public boolean symmetry;
+
+	@Param({"false", "true"})
+	public boolean heavy;
+
+	private PrintStream out;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Iterations {
+
+		public long iterations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			iterations = 0;
+		}
+	}
+
+	@Setup
+	public void silence() {
+		out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+	}
+
+	@TearDown
+	public void restore() {
+		System.setOut(out);
+	}
+
+	@Benchmark
+	public void UCTSearch(Position position, Iterations counter) {
+		Object search = position.engine.newSearch(timeLimit, symmetry, heavy);
+		counter.iterations += position.engine.search(search, position.bitBoard, position.piece);
+	}
+
+}
@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Generating the moves of the state.quarto position without symmetric
+ * duplicates, as MonteCarlo.expand does with symmetry on: the QuartoBoard
+ * version built on findSymmetricBoards, and the QuartoBitBoard version with
+ * and without the attribute symmetries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymmetryBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Symmetries {
+
+		@Param({"false", "true"})
+		public boolean attributeSymmetry;
+	}
+
+	@Benchmark
+	public Object getPossibleMoves(Position position) {
+		return position.engine.getPossibleMoves(position.board, position.piece);
+	}
+
+	@Benchmark
+	public Object getPossibleBitBoardMoves(Position position, Symmetries symmetries) {
+		return position.engine.getPossibleBitBoardMoves(position.bitBoard, position.piece, symmetries.attributeSymmetry);
+	}
+
+	@Benchmark
+	public Object findSymmetricBoards(Position position) {
+		return position.engine.findSymmetricBoards(position.board);
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * The UCT algorithm of MonteCarlo on a CompactTree.
+ *
+ * Actions are ints (a square or a piece id) from the search down to the
+ * agent, which formats the one it plays with QuartoAgent.formatPiece or
+ * QuartoAgent.formatSquare. Nodes do not hold boards: every iteration copies
+ * the root board into a scratch board and applies the actions on the way
+ * down, and the untried actions of a node are a bit mask, so an iteration
+ * allocates nothing.
+ *
+ * The search is single threaded and starts a new tree every turn, the node
+ * arrays are reused from one search to the next.
+ */
+public class CompactMonteCarlo {
+
+	private int timeLimit;
+	private double cp;
+	private boolean symmetry;
+
+	private CompactTree tree;
+	private final QuartoBitBoard rootBoard = new QuartoBitBoard();
+	private final QuartoBitBoard board = new QuartoBitBoard();
+	private PlayoutEngine playoutEngine = new PlayoutEngine();
+
+	// the nodes visited by the current iteration, from the root down
+	private final int[] path = new int[2 * QuartoBitBoard.NUMBER_OF_SQUARES + 2];
+
+	// the hash set Symmetry.distinctMoves uses on every expansion
+	private final long[] seenMoves = new long[64];
+
+	// iterations run during the last search
+	private long iterations;
+
+	public CompactMonteCarlo(int timeLimit, double cp, boolean symmetry) {
+		this(timeLimit, cp, symmetry, 1 << 20);
+	}
+
+	public CompactMonteCarlo(int timeLimit, double cp, boolean symmetry, int capacity) {
+		this.timeLimit = timeLimit;
+		this.cp = cp;
+		this.symmetry = symmetry;
+		this.tree = new CompactTree(capacity);
+	}
+
+	// see MonteCarlo.setHeavyPlayouts
+	public void setHeavyPlayouts(boolean heavyPlayouts) {
+		this.playoutEngine.setHeavy(heavyPlayouts);
+	}
+
+	// see MonteCarlo.setHeavyPlayoutRate
+	public void setHeavyPlayoutRate(double heavyPlayoutRate) {
+		this.playoutEngine.setHeavyRate(heavyPlayoutRate);
+	}
+
+	public long getIterations() {
+		return this.iterations;
+	}
+
+	public CompactTree getTree() {
+		return this.tree;
+	}
+
+	// returns the piece to hand to the other player
+	public int selectPiece(QuartoBitBoard board) {
+		this.tree.clear();
+		this.rootBoard.copyFrom(board);
+		int root = this.tree.add(CompactTree.NONE, 0, CompactTree.SELECT_PIECE, true, this.untriedPieces(board));
+		return this.tree.getAction(this.UCTSearch(root));
+	}
+
+	// returns the square to place piece on
+	public int selectSquare(QuartoBitBoard board, int piece) {
+		this.tree.clear();
+		this.rootBoard.copyFrom(board);
+		int root = this.tree.add(CompactTree.NONE, piece, CompactTree.SELECT_MOVE, true, this.untriedSquares(board, piece));
+		return this.tree.getAction(this.UCTSearch(root));
+	}
+
+	/*
+	 * function UctSearch(s0)
+	 * 		create root node v0 with state s0
+	 * 		while within computational budget do
+	 * 			v1 <= TreePolicy(v0)
+	 * 			delta <= DefaultPolicy(s(v1))
+	 * 			Backup(v1, delta)
+	 * 		return BestChild(v0,0)
+	 */
+	private int UCTSearch(int root) {
+		long endTime = System.currentTimeMillis() + this.timeLimit;
+		this.iterations = 0;
+		// at least one iteration, so the root has a child to return however short the time is
+		while (this.iterations == 0 || System.currentTimeMillis() < endTime) {
+			this.board.copyFrom(this.rootBoard);
+
+			// v1 <= TreePolicy(v0)
+			int length = this.treePolicy(root);
+			int node = this.path[length - 1];
+
+			// delta <= DefaultPolicy(s(v1))
+			int score = this.defaultPolicy(node);
+
+			// Backup(v1, delta)
+			this.backup(length, score);
+			this.iterations++;
+		}
+
+		int best = this.bestChild(root, 0);
+		System.out.println("Iterations: " + this.iterations + ", nodes: " + this.tree.size()
+				+ ", best: " + this.tree.getAction(best) + " Q=>" + this.tree.getQ(best) + ", N=>" + this.tree.getN(best));
+		return best;
+	}
+
+	/*
+	 * follows BestChild down from the root until a node with untried actions
+	 * 	is expanded or a terminal node is reached, applying every action to
+	 * 	the scratch board. Returns the length of the path
+	 */
+	private int treePolicy(int node) {
+		int length = 0;
+		this.path[length++] = node;
+		while (this.tree.getKind(node) != CompactTree.TERMINAL) {
+			if (this.tree.getUntried(node) != 0) {
+				this.path[length++] = this.expand(node);
+				return length;
+			}
+			node = this.bestChild(node, this.cp);
+			this.apply(node);
+			this.path[length++] = node;
+		}
+		return length;
+	}
+
+	/*
+	 *  function Expand(v)
+	 *  	choose action from untried actions for the node v
+	 *  	add a new child v' to v
+	 *  		with s(v') = Result(s(v),action)
+	 *  	return v'
+	 */
+	private int expand(int node) {
+		int action = Integer.numberOfTrailingZeros(this.tree.getUntried(node));
+		boolean player = this.tree.getPlayer(node);
+
+		if (this.tree.getKind(node) == CompactTree.SELECT_PIECE) {
+			// the piece is handed to the other player
+			return this.tree.add(node, action, CompactTree.SELECT_MOVE, !player, this.untriedSquares(this.board, action));
+		}
+
+		int piece = this.tree.getAction(node);
+		this.board.insertPieceOnSquare(action, piece);
+		if (this.board.checkLastMove(action) || this.board.checkIfBoardIsFull()) {
+			return this.tree.add(node, action, CompactTree.TERMINAL, player, 0);
+		}
+		return this.tree.add(node, action, CompactTree.SELECT_PIECE, player, this.untriedPieces(this.board));
+	}
+
+	// plays the action leading to node on the scratch board, choosing a piece does not change it
+	private void apply(int node) {
+		if (this.tree.getKind(node) != CompactTree.SELECT_MOVE) {
+			int parent = this.tree.getParent(node);
+			this.board.insertPieceOnSquare(this.tree.getAction(node), this.tree.getAction(parent));
+		}
+	}
+
+	private int untriedPieces(QuartoBitBoard board) {
+		int unplayed = board.getUnplayedPieces();
+		// every piece is the same on an empty board
+		if (Integer.bitCount(unplayed) == QuartoBitBoard.NUMBER_OF_PIECES) {
+			return 1;
+		}
+		return unplayed;
+	}
+
+	private int untriedSquares(QuartoBitBoard board, int piece) {
+		int empty = board.getEmptySquares();
+		// the first piece goes in the middle, as in SelectMoveNode
+		if (Integer.bitCount(empty) == QuartoBitBoard.NUMBER_OF_SQUARES) {
+			return 1 << QuartoBitBoard.toSquare(2, 2);
+		}
+		if (this.symmetry) {
+			return Symmetry.distinctMoves(board, piece, false, this.seenMoves);
+		}
+		return empty;
+	}
+
+	/*
+	 *  function BestChild(v, delta)
+	 *  	return argmax of c in children of v: Q(c)/N(c) + delta*sqrt(2*ln(N(v))/N(c))
+	 */
+	private int bestChild(int node, double delta) {
+		double logSimulations = Math.log(this.tree.getN(node));
+		double maxValue = Double.NEGATIVE_INFINITY;
+		int maxNode = CompactTree.NONE;
+		for (int child = this.tree.getFirstChild(node); child != CompactTree.NONE; child = this.tree.getNextSibling(child)) {
+			int n = this.tree.getN(child);
+			double value = (double) this.tree.getQ(child) / n + delta * Math.sqrt(2 * logSimulations / n);
+			if (value > maxValue) {
+				maxValue = value;
+				maxNode = child;
+			}
+		}
+		return maxNode;
+	}
+
+	/*
+	 *  return score from randomly simulated game, from player1's point of view
+	 */
+	private int defaultPolicy(int node) {
+		boolean player = this.tree.getPlayer(node);
+		switch (this.tree.getKind(node)) {
+		case CompactTree.SELECT_MOVE:
+			return this.playoutEngine.playGame(this.board, this.tree.getAction(node), player);
+		case CompactTree.SELECT_PIECE:
+			return this.playoutEngine.playGameFromPieceSelection(this.board, player);
+		default:
+			// the player who placed the last piece won, unless the board is full
+			if (this.board.checkLastMove(this.tree.getAction(node))) {
+				return player ? 1 : -1;
+			}
+			return 0;
+		}
+	}
+
+	/*
+	 *  function Backup(v, delta)
+	 *  	Q is kept from the point of view of the player acting at the parent, as in MonteCarlo
+	 */
+	private void backup(int length, int score) {
+		for (int i = length - 1; i >= 0; i--) {
+			int node = this.path[i];
+			boolean player1 = i == 0 ? this.tree.getPlayer(node) : this.tree.getPlayer(this.path[i - 1]);
+			this.tree.update(node, player1 ? score : -score);
+		}
+	}
+
+}
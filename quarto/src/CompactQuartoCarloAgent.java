@@ -0,0 +1,80 @@
+public class CompactQuartoCarloAgent extends QuartoAgent {
+
+    //kept for the whole game so its node arrays are allocated once
+    private CompactMonteCarlo monteCarlo;
+
+    //cp, playouts and time margin of the search, see SearchParameters
+    private SearchParameters parameters;
+
+    //Example AI
+    public CompactQuartoCarloAgent(GameClient gameClient, String stateFileName) {
+        this(gameClient, stateFileName, SearchParameters.load(SearchParameters.DEFAULT_FILE_NAME));
+    }
+
+    public CompactQuartoCarloAgent(GameClient gameClient, String stateFileName, SearchParameters parameters) {
+        // because super calls one of the super class constructors(you can overload constructors), you need to pass the parameters required.
+        super(gameClient, stateFileName);
+        this.parameters = parameters;
+    }
+
+    //MAIN METHOD
+    public static void main(String[] args) {
+        //start the server
+        GameClient gameClient = new GameClient();
+
+        String ip = null;
+        String stateFileName = null;
+        //IP must be specified
+        if(args.length > 0) {
+            ip = args[0];
+        } else {
+            System.out.println("No IP Specified");
+            System.exit(0);
+        }
+        if (args.length > 1) {
+            stateFileName = args[1];
+        }
+        //optional third argument is the search parameters file, only cp, the heavy playout rate and the time margin apply
+        String parametersFileName = SearchParameters.DEFAULT_FILE_NAME;
+        if (args.length > 2) {
+            parametersFileName = args[2];
+        }
+        gameClient.connectToServer(ip, 4321);
+        CompactQuartoCarloAgent quartoAgent = new CompactQuartoCarloAgent(gameClient, stateFileName, SearchParameters.load(parametersFileName));
+        quartoAgent.play();
+
+        gameClient.closeConnection();
+    }
+
+    @Override
+    protected String pieceSelectionAlgorithm() {	
+		 CompactMonteCarlo mc = this.getMonteCarlo();
+		 int piece = mc.selectPiece(new QuartoBitBoard(this.quartoBoard));
+		 return formatPiece(piece); 
+    }
+
+    /*
+     * Do Your work here
+     * The server expects a move in the form of:   row,column
+     */
+    @Override
+    protected String moveSelectionAlgorithm(int pieceID) { 
+		 CompactMonteCarlo mc = this.getMonteCarlo();
+		 int square = mc.selectSquare(new QuartoBitBoard(this.quartoBoard), pieceID);
+		 return formatSquare(square); 
+    }
+
+    //the part of timeLimitForResponse the search leaves for the network
+    @Override
+    protected int getTimeMargin() {
+        return this.parameters.getTimeMargin();
+    }
+
+    //the time limit is only known once the game started, so the search is created on first use
+    private CompactMonteCarlo getMonteCarlo() {
+        if (this.monteCarlo == null) {
+            this.monteCarlo = this.parameters.newCompactMonteCarlo(this.timeLimitForResponse, true);
+        }
+        return this.monteCarlo;
+    }
+}
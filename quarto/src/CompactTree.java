@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/*
+ * Search tree stored as parallel primitive arrays indexed by node id, for
+ * CompactMonteCarlo.
+ *
+ * A node is an int. Its fields live in one array each:
+ * 		action		the square (0-24) or piece id (0-31) leading to the
+ * 					node, for the root the piece it has to place if any
+ * 		flags		the kind of node and the player acting at it
+ * 		parent		the parent's id, -1 for the root
+ * 		firstChild	the first child's id, -1 if there is none
+ * 		nextSibling	the next child of the same parent, -1 for the last
+ * 		untried		bit mask of the squares or pieces not expanded yet
+ * 		n, q		visits and summed results, as in Node
+ *
+ * Children form a linked list through firstChild and nextSibling, so adding
+ * one does not allocate. The arrays are created once with room for capacity
+ * nodes and doubled when they fill up, and clear() makes the whole store
+ * reusable without freeing it, so a search creates no garbage per node.
+ * Every node takes 26 bytes, a few million nodes fit in the default heap.
+ *
+ * The store does not keep boards: the search replays the actions from the
+ * root on a scratch board. It is not thread safe.
+ */
+public class CompactTree {
+
+	public static final int SELECT_PIECE = 0;
+	public static final int SELECT_MOVE = 1;
+	public static final int TERMINAL = 2;
+
+	private static final int KIND_MASK = 3;
+	private static final int PLAYER_FLAG = 4;
+
+	public static final int NONE = -1;
+
+	private int size;
+
+	private byte[] action;
+	private byte[] flags;
+	private int[] parent;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private int[] untried;
+	private int[] n;
+	private int[] q;
+
+	public CompactTree(int capacity) {
+		this.action = new byte[capacity];
+		this.flags = new byte[capacity];
+		this.parent = new int[capacity];
+		this.firstChild = new int[capacity];
+		this.nextSibling = new int[capacity];
+		this.untried = new int[capacity];
+		this.n = new int[capacity];
+		this.q = new int[capacity];
+	}
+
+	//drops every node, the arrays are kept for the next search
+	public void clear() {
+		this.size = 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public int getCapacity() {
+		return this.n.length;
+	}
+
+	//adds a node without children and returns its id, parent NONE makes a root
+	public int add(int parent, int action, int kind, boolean player, int untried) {
+		if (this.size == this.n.length) {
+			this.grow();
+		}
+		int node = this.size++;
+		this.action[node] = (byte) action;
+		this.flags[node] = (byte) (kind | (player ? PLAYER_FLAG : 0));
+		this.parent[node] = parent;
+		this.firstChild[node] = NONE;
+		this.nextSibling[node] = NONE;
+		this.untried[node] = untried;
+		this.n[node] = 0;
+		this.q[node] = 0;
+		if (parent != NONE) {
+			this.nextSibling[node] = this.firstChild[parent];
+			this.firstChild[parent] = node;
+			this.untried[parent] &= ~(1 << action);
+		}
+		return node;
+	}
+
+	private void grow() {
+		int capacity = this.n.length * 2;
+		this.action = Arrays.copyOf(this.action, capacity);
+		this.flags = Arrays.copyOf(this.flags, capacity);
+		this.parent = Arrays.copyOf(this.parent, capacity);
+		this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+		this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+		this.untried = Arrays.copyOf(this.untried, capacity);
+		this.n = Arrays.copyOf(this.n, capacity);
+		this.q = Arrays.copyOf(this.q, capacity);
+	}
+
+	public int getAction(int node) {
+		return this.action[node];
+	}
+
+	public int getKind(int node) {
+		return this.flags[node] & KIND_MASK;
+	}
+
+	public boolean getPlayer(int node) {
+		return (this.flags[node] & PLAYER_FLAG) != 0;
+	}
+
+	public int getParent(int node) {
+		return this.parent[node];
+	}
+
+	public int getFirstChild(int node) {
+		return this.firstChild[node];
+	}
+
+	public int getNextSibling(int node) {
+		return this.nextSibling[node];
+	}
+
+	public int getUntried(int node) {
+		return this.untried[node];
+	}
+
+	public int getN(int node) {
+		return this.n[node];
+	}
+
+	public int getQ(int node) {
+		return this.q[node];
+	}
+
+	public void update(int node, int delta) {
+		this.n[node]++;
+		this.q[node] += delta;
+	}
+
+}
@@ -0,0 +1,282 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Measures the Elo difference between two agents and stops as soon as a
+ * sequential probability ratio test (SPRT) decides between
+ * 		H0: the first agent is elo0 stronger
+ * 		H1: the first agent is elo1 stronger
+ * so a change to MonteCarlo costs as many games as it takes to tell, not
+ * a fixed thousand.
+ *
+ * The games are played in colour-balanced pairs by MatchRunner: both games
+ * of a pair start from the same position, each agent placing first once.
+ * The positions are .quarto files, read by the agents and the runner with
+ * QuartoBoard.setBoardFromFile, and the pairs cycle through them (see
+ * quarto/openings). A pair scores 0 to 2 points for the first agent, and
+ * the statistics are taken over pairs (the pentanomial model): whatever
+ * advantage a start position or placing first gives cancels out within a
+ * pair, so the variance is lower than over single games.
+ *
+ * With m the mean pair score divided by 2 and v its variance over N pairs:
+ * 		elo			-400 * log10(1 / m - 1)
+ * 		95% interval	elo of m -/+ 1.96 * sqrt(v / N)
+ * 		LLR			N * (s1 - s0) * (2 * m - s0 - s1) / (2 * v)
+ * where s0 and s1 are the expected scores at elo0 and elo1; this is the
+ * normal approximation of the log-likelihood ratio used by Fishtest, with
+ * m and v taken over a prior pair besides the pairs played. The
+ * test stops with H1 once LLR >= log((1 - BETA) / ALPHA) and with H0 once
+ * LLR <= log(BETA / (1 - ALPHA)).
+ *
+ * Pairs run in parallel, at most one per thread at a time, so stopping
+ * wastes no more than the pairs still being played.
+ *
+ * Usage: java EloMatch agent1 agent2 [elo0] [elo1] [maxPairs] [moveTime] [threads] [start files or directories...]
+ * 	agents are those of MatchRunner.agentFactory
+ * 	defaults to elo0 0, elo1 30, 500 pairs, 200 ms, a thread per processor
+ * 	and the empty board
+ */
+public class EloMatch {
+
+	// the probabilities of accepting H1 when H0 holds and H0 when H1 holds
+	public static final double ALPHA = 0.05;
+	public static final double BETA = 0.05;
+
+	// the LLR counts every kind of pair this often on top of the pairs played, a prior of one pair
+	private static final double PRIOR_PAIRS = 0.2;
+
+	/*
+	 * the results of the pairs played so far, all from the point of view of
+	 * 	the first agent
+	 */
+	public static class Statistics {
+		// pairs by the half points the first agent scored, 0 to 4
+		private final int[] pairs = new int[5];
+		private int wins;
+		private int draws;
+		private int losses;
+
+		public void add(int firstGame, int secondGame) {
+			pairs[firstGame + secondGame + 2]++;
+			for (int game : new int[] {firstGame, secondGame}) {
+				if (game > 0) {
+					wins++;
+				} else if (game < 0) {
+					losses++;
+				} else {
+					draws++;
+				}
+			}
+		}
+
+		public int getPairs() {
+			int count = 0;
+			for (int n : pairs) {
+				count += n;
+			}
+			return count;
+		}
+
+		// the mean score per game, in [0, 1]
+		public double getScore() {
+			return moments(0)[0];
+		}
+
+		// the variance of the pair scores divided by 2
+		public double getVariance() {
+			return moments(0)[1];
+		}
+
+		/*
+		 * the mean and the variance of the pair scores divided by 2, every
+		 * 	kind of pair counted prior times more than it was played
+		 */
+		private double[] moments(double prior) {
+			double count = 0, total = 0;
+			for (int points = 0; points < pairs.length; points++) {
+				double n = pairs[points] + prior;
+				count += n;
+				total += n * points / 4.0;
+			}
+			double mean = total / count;
+			double variance = 0;
+			for (int points = 0; points < pairs.length; points++) {
+				double deviation = points / 4.0 - mean;
+				variance += (pairs[points] + prior) * deviation * deviation;
+			}
+			return new double[] {mean, variance / count};
+		}
+
+		public double getElo() {
+			return elo(getScore());
+		}
+
+		// the 95% confidence interval of the Elo difference, lower and upper bound
+		public double[] getEloInterval() {
+			double margin = 1.96 * Math.sqrt(getVariance() / getPairs());
+			return new double[] {elo(getScore() - margin), elo(getScore() + margin)};
+		}
+
+		/*
+		 * the log-likelihood ratio of H1 (elo1) against H0 (elo0). The moments
+		 * 	include a prior of one pair spread over the five results, so the
+		 * 	variance is never 0 and a handful of equal pairs cannot look
+		 * 	certain
+		 */
+		public double getLogLikelihoodRatio(double elo0, double elo1) {
+			double[] moments = moments(PRIOR_PAIRS);
+			double s0 = expectedScore(elo0);
+			double s1 = expectedScore(elo1);
+			return getPairs() * (s1 - s0) * (2 * moments[0] - s0 - s1) / (2 * moments[1]);
+		}
+
+		public String toString() {
+			double[] interval = getEloInterval();
+			return String.format("+%d =%d -%d, elo %.1f [%.1f, %.1f]", wins, draws, losses, getElo(), interval[0], interval[1]);
+		}
+	}
+
+	public static double elo(double score) {
+		if (score <= 0) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (score >= 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	public static double expectedScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	// log(BETA / (1 - ALPHA)) and log((1 - BETA) / ALPHA), the SPRT stops outside of them
+	public static double lowerBound() {
+		return Math.log(BETA / (1 - ALPHA));
+	}
+
+	public static double upperBound() {
+		return Math.log((1 - BETA) / ALPHA);
+	}
+
+	private final MatchRunner runner;
+	private final int threads;
+
+	public EloMatch(MatchRunner runner, int threads) {
+		this.runner = runner;
+		this.threads = threads;
+	}
+
+	/*
+	 * plays pairs from the start files (the empty board if there are none)
+	 * 	until the SPRT decides or maxPairs were played, printing the
+	 * 	statistics after every pair. Returns 1 if H1 was accepted, -1 if H0
+	 * 	was and 0 if maxPairs ran out first.
+	 */
+	public int run(double elo0, double elo1, int maxPairs, String[] startFiles, Statistics statistics) {
+		final String[] starts = startFiles.length == 0 ? new String[] {null} : startFiles;
+		PrintStream out = MatchRunner.silenceOutput();
+		// the pairs left running when the test stops must not keep the JVM alive
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads, task -> {
+			Thread thread = new Thread(task);
+			thread.setDaemon(true);
+			return thread;
+		});
+		ExecutorCompletionService<int[]> completion = new ExecutorCompletionService<int[]>(pool);
+		int decision = 0;
+		try {
+			int submitted = 0;
+			while (submitted < Math.min(this.threads, maxPairs)) {
+				submitPair(completion, starts[submitted % starts.length]);
+				submitted++;
+			}
+			while (statistics.getPairs() < submitted) {
+				int[] pair = completion.take().get();
+				statistics.add(pair[0], pair[1]);
+				double llr = statistics.getLogLikelihoodRatio(elo0, elo1);
+				out.println(String.format("%d pairs: %s, LLR %.2f [%.2f, %.2f]",
+						statistics.getPairs(), statistics, llr, lowerBound(), upperBound()));
+				if (llr >= upperBound()) {
+					decision = 1;
+					break;
+				}
+				if (llr <= lowerBound()) {
+					decision = -1;
+					break;
+				}
+				if (submitted < maxPairs) {
+					submitPair(completion, starts[submitted % starts.length]);
+					submitted++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			System.setOut(out);
+		}
+		return decision;
+	}
+
+	private void submitPair(ExecutorCompletionService<int[]> completion, final String startFile) {
+		completion.submit(() -> new int[] {
+			this.runner.playGame(startFile, true),
+			this.runner.playGame(startFile, false)
+		});
+	}
+
+	// the .quarto files named, directories are replaced by the .quarto files in them
+	public static String[] findStartFiles(String[] names) {
+		ArrayList<String> files = new ArrayList<String>();
+		for (String name : names) {
+			File file = new File(name);
+			if (file.isDirectory()) {
+				File[] children = file.listFiles((directory, child) -> child.endsWith(".quarto"));
+				Arrays.sort(children);
+				for (File child : children) {
+					files.add(child.getPath());
+				}
+			} else {
+				files.add(name);
+			}
+		}
+		return files.toArray(new String[files.size()]);
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: java EloMatch agent1 agent2 [elo0] [elo1] [maxPairs] [moveTime] [threads] [start files or directories...]");
+			System.exit(0);
+		}
+		double elo0 = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+		double elo1 = args.length > 3 ? Double.parseDouble(args[3]) : 30;
+		int maxPairs = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+		int moveTime = args.length > 5 ? Integer.parseInt(args[5]) : 200;
+		int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+		String[] startFiles = new String[0];
+		if (args.length > 7) {
+			startFiles = findStartFiles(Arrays.copyOfRange(args, 7, args.length));
+		}
+
+		MatchRunner runner = new MatchRunner(MatchRunner.agentFactory(args[0]), MatchRunner.agentFactory(args[1]), moveTime, threads);
+		Statistics statistics = new Statistics();
+		int decision = new EloMatch(runner, threads).run(elo0, elo1, maxPairs, startFiles, statistics);
+		System.out.println(args[0] + " against " + args[1] + ": " + statistics);
+		if (decision > 0) {
+			System.out.println("H1 accepted: " + args[0] + " is " + elo1 + " Elo stronger rather than " + elo0);
+		} else if (decision < 0) {
+			System.out.println("H0 accepted: " + args[0] + " is " + elo0 + " Elo stronger rather than " + elo1);
+		} else {
+			System.out.println("No decision after " + statistics.getPairs() + " pairs");
+		}
+	}
+
+}
@@ -0,0 +1,309 @@
+import java.util.Arrays;
+
+/*
+ * Exact negamax solver with alpha-beta pruning for the end of the game.
+ *
+ * A turn is split in the same two steps as the tree search: the player to
+ * move places the piece it was given, then hands one of the unplayed pieces
+ * to the other player. Values are WIN, DRAW or LOSS for the player acting in
+ * a position and only change sign when a piece is handed over.
+ *
+ * 	place(board, piece)	WIN if a square completes a line, DRAW if the
+ * 				last square is filled, otherwise the best select()
+ * 				after placing piece on an empty square
+ * 	select(board)		the best -place(board, p) over the unplayed pieces p
+ *
+ * Move ordering: winning squares are checked before anything is searched,
+ * pieces that let the other player win at once are never searched (they
+ * are losses), and the best action found for a position in the
+ * transposition table is tried first.
+ *
+ * The transposition table is the solver's own and is kept between solves.
+ * Positions are keyed by their Zobrist hash (see Zobrist) and an entry holds
+ * the value, whether it is exact or a bound, and the best action. Slots are
+ * replaced on collision.
+ *
+ * A solve stops when the deadline passes, in which case it returns UNKNOWN.
+ */
+public class EndgameSolver {
+
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+	public static final int UNKNOWN = -2;
+
+	private static final int EXACT = 0;
+	private static final int LOWER_BOUND = 1;
+	private static final int UPPER_BOUND = 2;
+
+	private static final int NO_ACTION = 63;
+
+	// how often (in nodes) the deadline is checked
+	private static final int CLOCK_MASK = (1 << 12) - 1;
+
+	// one scratch board per square placed, boards[depth + 1] is boards[depth] after the next placement
+	private final QuartoBitBoard[] boards = new QuartoBitBoard[QuartoBitBoard.NUMBER_OF_SQUARES + 1];
+
+	// entry = value + 1 | bound << 2 | best action << 4
+	private final long[] keys;
+	private final int[] entries;
+	private final int mask;
+
+	private long deadline;
+	private boolean aborted;
+
+	private long nodes;
+	private long elapsed;
+
+	// the action chosen at the root of the last solve, a square or a piece id
+	private int bestAction;
+
+	public EndgameSolver() {
+		this(20);
+	}
+
+	public EndgameSolver(int log2Size) {
+		for (int i = 0; i < this.boards.length; i++) {
+			this.boards[i] = new QuartoBitBoard();
+		}
+		this.keys = new long[1 << log2Size];
+		this.entries = new int[1 << log2Size];
+		this.mask = (1 << log2Size) - 1;
+	}
+
+	/*
+	 * solves the position where the player to move has to place piece,
+	 * getBestSquare is the square to place it on
+	 */
+	public int solvePlacement(QuartoBitBoard board, int piece, long deadline) {
+		this.start(board, deadline);
+		int value = this.place(0, piece, LOSS, WIN);
+		return this.finish(value);
+	}
+
+	/*
+	 * solves the position where the player to move has to hand over a piece,
+	 * getBestPiece is the piece to give
+	 */
+	public int solveSelection(QuartoBitBoard board, long deadline) {
+		this.start(board, deadline);
+		int value = this.select(0, LOSS, WIN);
+		return this.finish(value);
+	}
+
+	private void start(QuartoBitBoard board, long deadline) {
+		this.boards[0].copyFrom(board);
+		this.deadline = deadline;
+		this.aborted = false;
+		this.nodes = 0;
+		this.elapsed = System.nanoTime();
+		this.bestAction = NO_ACTION;
+	}
+
+	private int finish(int value) {
+		this.elapsed = System.nanoTime() - this.elapsed;
+		return this.aborted ? UNKNOWN : value;
+	}
+
+	private int place(int depth, int piece, int alpha, int beta) {
+		if ((++this.nodes & CLOCK_MASK) == 0 && System.currentTimeMillis() > this.deadline) {
+			this.aborted = true;
+		}
+		if (this.aborted) {
+			return DRAW;
+		}
+
+		QuartoBitBoard board = this.boards[depth];
+		int empty = board.getEmptySquares();
+
+		// winning squares first
+		int winning = board.getWinningSquares(piece);
+		if (winning != 0) {
+			if (depth == 0) {
+				this.bestAction = Integer.numberOfTrailingZeros(winning);
+			}
+			return WIN;
+		}
+
+		// no line is completed by the last square
+		if (Integer.bitCount(empty) == 1) {
+			if (depth == 0) {
+				this.bestAction = Integer.numberOfTrailingZeros(empty);
+			}
+			return DRAW;
+		}
+
+		long key = board.getHash() ^ Zobrist.PIECE_TO_PLACE[piece];
+		int ordered = this.probe(key);
+		if (ordered != -1 && depth > 0) {
+			int value = (ordered & 3) - 1;
+			int bound = (ordered >>> 2) & 3;
+			if (bound == EXACT
+					|| (bound == LOWER_BOUND && value >= beta)
+					|| (bound == UPPER_BOUND && value <= alpha)) {
+				return value;
+			}
+		}
+		int first = ordered == -1 ? NO_ACTION : ordered >>> 4;
+		if (first != NO_ACTION && (empty & (1 << first)) == 0) {
+			first = NO_ACTION;
+		}
+
+		int alphaStart = alpha;
+		int best = UNKNOWN;
+		int bestSquare = NO_ACTION;
+		QuartoBitBoard next = this.boards[depth + 1];
+
+		// the table's best square first, then the others in board order
+		int squares = empty;
+		int square = first != NO_ACTION ? first : Integer.numberOfTrailingZeros(squares);
+		while (true) {
+			squares &= ~(1 << square);
+
+			next.copyFrom(board);
+			next.insertPieceOnSquare(square, piece);
+			int value = this.select(depth + 1, alpha, beta);
+
+			if (value > best) {
+				best = value;
+				bestSquare = square;
+			}
+			if (best > alpha) {
+				alpha = best;
+			}
+			if (alpha >= beta || squares == 0) {
+				break;
+			}
+			square = Integer.numberOfTrailingZeros(squares);
+		}
+
+		if (depth == 0) {
+			this.bestAction = bestSquare;
+		}
+		this.store(key, best, alphaStart, beta, bestSquare);
+		return best;
+	}
+
+	private int select(int depth, int alpha, int beta) {
+		if (this.aborted) {
+			return DRAW;
+		}
+
+		QuartoBitBoard board = this.boards[depth];
+		int unplayed = board.getUnplayedPieces();
+
+		long key = board.getHash();
+		int ordered = this.probe(key);
+		if (ordered != -1 && depth > 0) {
+			int value = (ordered & 3) - 1;
+			int bound = (ordered >>> 2) & 3;
+			if (bound == EXACT
+					|| (bound == LOWER_BOUND && value >= beta)
+					|| (bound == UPPER_BOUND && value <= alpha)) {
+				return value;
+			}
+		}
+		int first = ordered == -1 ? NO_ACTION : ordered >>> 4;
+		if (first != NO_ACTION && (unplayed & (1 << first)) == 0) {
+			first = NO_ACTION;
+		}
+
+		int alphaStart = alpha;
+		int unsafe = board.getUnsafePieces();
+		// handing over any piece is a loss until a safe one is found
+		int best = LOSS;
+		int bestPiece = first != NO_ACTION ? first : Integer.numberOfTrailingZeros(unplayed);
+
+		int pieces = unplayed;
+		int piece = first != NO_ACTION ? first : Integer.numberOfTrailingZeros(pieces);
+		while (true) {
+			pieces &= ~(1 << piece);
+
+			// pieces the other player would win with at once are losses and not searched
+			if ((unsafe & (1 << piece)) == 0) {
+				int value = -this.place(depth, piece, -beta, -alpha);
+
+				if (value > best || (value == best && best == LOSS)) {
+					best = value;
+					bestPiece = piece;
+				}
+				if (best > alpha) {
+					alpha = best;
+				}
+				if (alpha >= beta) {
+					break;
+				}
+			}
+			if (pieces == 0) {
+				break;
+			}
+			piece = Integer.numberOfTrailingZeros(pieces);
+		}
+
+		if (depth == 0) {
+			this.bestAction = bestPiece;
+		}
+		this.store(key, best, alphaStart, beta, bestPiece);
+		return best;
+	}
+
+	// returns the entry stored for key, or -1 if there is none
+	private int probe(long key) {
+		int index = (int) key & this.mask;
+		if (this.keys[index] != key || this.entries[index] == 0) {
+			return -1;
+		}
+		return this.entries[index] & ~(1 << 31);
+	}
+
+	private void store(long key, int value, int alpha, int beta, int action) {
+		if (this.aborted) {
+			return;
+		}
+		int bound = EXACT;
+		if (value <= alpha) {
+			bound = UPPER_BOUND;
+		} else if (value >= beta) {
+			bound = LOWER_BOUND;
+		}
+		int index = (int) key & this.mask;
+		this.keys[index] = key;
+		// the top bit marks the slot as used
+		this.entries[index] = (1 << 31) | (value + 1) | (bound << 2) | (action << 4);
+	}
+
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.entries, 0);
+	}
+
+	public int getBestSquare() {
+		return this.bestAction;
+	}
+
+	public int getBestPiece() {
+		return this.bestAction;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	public long getNodesPerSecond() {
+		return this.nodes * 1000000000L / Math.max(1, this.elapsed);
+	}
+
+	public static String describe(int value) {
+		switch (value) {
+		case WIN:
+			return "win";
+		case LOSS:
+			return "loss";
+		case DRAW:
+			return "draw";
+		default:
+			return "unknown";
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Small xorshift64* generator for the playouts.
+ *
+ * It is much cheaper than Math.random(), which goes through a shared
+ * java.util.Random with an atomic seed, but it is not thread safe: every
+ * thread should own its own generator.
+ */
+public class FastRandom {
+
+	private long state;
+
+	public FastRandom() {
+		this(ThreadLocalRandom.current().nextLong() ^ System.nanoTime());
+	}
+
+	public FastRandom(long seed) {
+		this.setSeed(seed);
+	}
+
+	public void setSeed(long seed) {
+		//spread the seed over all the bits (splitmix64 finalizer), the state must never be 0
+		long z = seed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		this.state = z == 0 ? 0x9E3779B97F4A7C15L : z;
+	}
+
+	public long nextLong() {
+		long x = this.state;
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		this.state = x;
+		return x * 0x2545F4914F6CDD1DL;
+	}
+
+	//returns a number in [0, bound), bound must be positive
+	public int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	//returns a number in [0, 1)
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+}
@@ -0,0 +1,309 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Plays games between two agents inside one JVM, many at a time, without
+ * QuartoServer, GameClient or sockets.
+ *
+ * The runner calls pieceSelectionAlgorithm and moveSelectionAlgorithm of
+ * both agents directly and follows the rules of QuartoServer.play:
+ * 		player 2 chooses the piece player 1 places, then the roles swap
+ * 		a placement that completes a line wins, a full board is a draw
+ * 		an invalid answer, or one later than the time limit, is replaced
+ * 			by a random piece or square, like the server does
+ * Each agent sees the game as it would through QuartoAgent.play: the
+ * piece and the move are put on its quartoBoard, and pieceSelected and
+ * movePlayed are called in the same order, so agents that keep their tree
+ * between turns work unchanged.
+ *
+ * Every game gets two new agents from the factories, so agents are never
+ * shared between threads. Agents search for a fixed time per decision,
+ * moveTime milliseconds: an agent keeps getTimeMargin() milliseconds of
+ * timeLimitForResponse for the network, so the runner hands it moveTime
+ * plus its margin. There is no network here, so an answer later than
+ * moveTime + LATE_TOLERANCE counts as late and is replaced like an invalid
+ * one; the late answers are counted in the Result. Since every game runs
+ * on one pool thread, each agent should search single threaded (see
+ * agentFactory).
+ *
+ * Results are counted for the first agent. Whichever agent is player 1
+ * alternates between games, and so do the start positions if several
+ * .quarto files are given.
+ *
+ * Usage: java MatchRunner agent1 agent2 [games] [moveTime] [threads] [state files...]
+ * 	agents are carlo, symmetry, compact, semirandom or random
+ * 	defaults to 100 games, 200 ms and a thread per processor
+ */
+public class MatchRunner {
+
+	// how far past moveTime an answer may come: the bookkeeping around the search and a collector pause
+	private static final int LATE_TOLERANCE = 200;
+
+	public interface AgentFactory {
+		QuartoAgent newAgent(String stateFileName);
+	}
+
+	public static class Result {
+		private int wins;
+		private int draws;
+		private int losses;
+		private int late;
+		private long elapsed;
+
+		public int getWins() {
+			return this.wins;
+		}
+
+		public int getDraws() {
+			return this.draws;
+		}
+
+		public int getLosses() {
+			return this.losses;
+		}
+
+		public int getGames() {
+			return this.wins + this.draws + this.losses;
+		}
+
+		// answers of either agent that came later than moveTime + LATE_TOLERANCE
+		public int getLateAnswers() {
+			return this.late;
+		}
+
+		// wall clock milliseconds the games took
+		public long getElapsed() {
+			return this.elapsed;
+		}
+
+		// a win counts 1, a draw 1/2
+		public double getScore() {
+			return (this.wins + 0.5 * this.draws) / getGames();
+		}
+
+		public double getGamesPerHour() {
+			return getGames() * 3600000.0 / Math.max(1, this.elapsed);
+		}
+
+		void add(int score) {
+			if (score > 0) {
+				this.wins++;
+			} else if (score < 0) {
+				this.losses++;
+			} else {
+				this.draws++;
+			}
+		}
+
+		public String toString() {
+			return "+" + this.wins + " =" + this.draws + " -" + this.losses
+					+ String.format(" (score %.3f, %.0f games/hour", getScore(), getGamesPerHour())
+					+ (this.late > 0 ? ", " + this.late + " late answers)" : ")");
+		}
+	}
+
+	private final AgentFactory first;
+	private final AgentFactory second;
+	private final int moveTime;
+	private final int threads;
+	private final AtomicInteger lateAnswers = new AtomicInteger();
+
+	public MatchRunner(AgentFactory first, AgentFactory second, int moveTime, int threads) {
+		this.first = first;
+		this.second = second;
+		this.moveTime = moveTime;
+		this.threads = threads;
+	}
+
+	/*
+	 * plays games games on the thread pool and prints the running result
+	 * 	after each one; everything the agents print is dropped meanwhile.
+	 * 	stateFiles may be empty for the empty board.
+	 */
+	public Result play(int games, final String[] stateFiles) {
+		PrintStream out = silenceOutput();
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+		Result result = new Result();
+		long start = System.currentTimeMillis();
+		try {
+			for (int game = 0; game < games; game++) {
+				final String stateFileName = stateFiles.length == 0 ? null : stateFiles[(game / 2) % stateFiles.length];
+				final boolean firstPlacesFirst = game % 2 == 0;
+				completion.submit(() -> playGame(stateFileName, firstPlacesFirst));
+			}
+			for (int game = 0; game < games; game++) {
+				result.add(completion.take().get());
+				result.late = this.lateAnswers.get();
+				result.elapsed = System.currentTimeMillis() - start;
+				out.println(result.getGames() + "/" + games + ": " + result);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			System.setOut(out);
+		}
+		return result;
+	}
+
+	/*
+	 * plays one game from stateFileName (null for the empty board), returns
+	 * 	1 if the first agent wins, -1 if the second one wins and 0 for a draw.
+	 * 	firstPlacesFirst makes the first agent player 1, the player placing
+	 * 	the first piece.
+	 */
+	public int playGame(String stateFileName, boolean firstPlacesFirst) {
+		QuartoAgent[] agents = new QuartoAgent[2];
+		agents[firstPlacesFirst ? 0 : 1] = this.first.newAgent(stateFileName);
+		agents[firstPlacesFirst ? 1 : 0] = this.second.newAgent(stateFileName);
+		for (QuartoAgent agent : agents) {
+			agent.timeLimitForResponse = this.moveTime + agent.getTimeMargin();
+		}
+
+		// the server's copy of the game
+		QuartoBoard board = new QuartoBoard(QuartoAgent.NUMBER_OF_ROWS, QuartoAgent.NUMBER_OF_COLUMNS,
+				QuartoAgent.NUMBER_OF_PIECES, stateFileName);
+		QuartoBitBoard bitBoard = new QuartoBitBoard(board);
+
+		int playerOne = 0, playerTwo = 1;
+		while (true) {
+			int pieceID = choosePiece(agents[playerTwo], board);
+			for (QuartoAgent agent : agents) {
+				agent.pieceSelected(pieceID);
+			}
+
+			int[] move = chooseMove(agents[playerOne], board, pieceID);
+			board.insertPieceOnBoard(move[0], move[1], pieceID);
+			bitBoard.insertPieceOnBoard(move[0], move[1], pieceID);
+			for (QuartoAgent agent : agents) {
+				agent.quartoBoard.insertPieceOnBoard(move[0], move[1], pieceID);
+				agent.movePlayed(move[0], move[1], pieceID);
+			}
+
+			if (bitBoard.checkLastMove(move[0], move[1])) {
+				return (playerOne == 0) == firstPlacesFirst ? 1 : -1;
+			}
+			if (board.checkIfBoardIsFull()) {
+				return 0;
+			}
+			int temp = playerOne;
+			playerOne = playerTwo;
+			playerTwo = temp;
+		}
+	}
+
+	private int choosePiece(QuartoAgent agent, QuartoBoard board) {
+		long start = System.currentTimeMillis();
+		String response = agent.pieceSelectionAlgorithm();
+		try {
+			if (isLate(start)) {
+				throw new IllegalArgumentException("INVALID");
+			}
+			int pieceID = Integer.parseInt(response, 2);
+			if (pieceID < 0 || pieceID >= board.getNumberOfPieces() || board.isPieceOnBoard(pieceID)) {
+				throw new IllegalArgumentException("INVALID");
+			}
+			return pieceID;
+		} catch (Exception e) {
+			return board.chooseRandomPieceNotPlayed(100);
+		}
+	}
+
+	private int[] chooseMove(QuartoAgent agent, QuartoBoard board, int pieceID) {
+		long start = System.currentTimeMillis();
+		String response = agent.moveSelectionAlgorithm(pieceID);
+		try {
+			if (isLate(start)) {
+				throw new IllegalArgumentException("INVALID");
+			}
+			String[] rowColumn = response.split(",");
+			int[] move = {Integer.parseInt(rowColumn[0]), Integer.parseInt(rowColumn[1])};
+			if (move[0] < 0 || move[0] >= board.getNumberOfRows() || move[1] < 0 || move[1] >= board.getNumberOfColumns()
+					|| board.isSpaceTaken(move[0], move[1])) {
+				throw new IllegalArgumentException("INVALID");
+			}
+			return move;
+		} catch (Exception e) {
+			return board.chooseRandomPositionNotPlayed(100);
+		}
+	}
+
+	// checks and counts an answer to a request sent at start
+	private boolean isLate(long start) {
+		if (System.currentTimeMillis() - start <= this.moveTime + LATE_TOLERANCE) {
+			return false;
+		}
+		this.lateAnswers.incrementAndGet();
+		return true;
+	}
+
+	// drops everything printed from now on, returns the stream to restore afterwards
+	static PrintStream silenceOutput() {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		return out;
+	}
+
+	// the agents by the names main accepts, searching agents get one thread
+	public static AgentFactory agentFactory(String name) {
+		return agentFactory(name, null);
+	}
+
+	/*
+	 * as above, the MonteCarlo agents (carlo and symmetry) search with
+	 * 	parameters, or read search.params when it is null
+	 */
+	public static AgentFactory agentFactory(String name, final SearchParameters parameters) {
+		if (parameters != null && name.equals("carlo")) {
+			return stateFileName -> new QuartoCarloAgent(null, stateFileName, 1, parameters);
+		}
+		if (parameters != null && name.equals("symmetry")) {
+			return stateFileName -> new SymmetryQuartoCarloAgent(null, stateFileName, 1, parameters);
+		}
+		switch (name) {
+		case "carlo":
+			return stateFileName -> new QuartoCarloAgent(null, stateFileName, 1);
+		case "symmetry":
+			return stateFileName -> new SymmetryQuartoCarloAgent(null, stateFileName, 1);
+		case "compact":
+			return stateFileName -> new CompactQuartoCarloAgent(null, stateFileName);
+		case "semirandom":
+			return stateFileName -> new QuartoSemiRandomAgent(null, stateFileName);
+		case "random":
+			return stateFileName -> new QuartoRandomAgent(null, stateFileName);
+		default:
+			throw new IllegalArgumentException("Unknown agent " + name);
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: java MatchRunner agent1 agent2 [games] [moveTime] [threads] [state files...]");
+			System.exit(0);
+		}
+		int games = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int moveTime = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		String[] stateFiles = new String[0];
+		if (args.length > 5) {
+			stateFiles = new String[args.length - 5];
+			System.arraycopy(args, 5, stateFiles, 0, stateFiles.length);
+		}
+
+		MatchRunner runner = new MatchRunner(agentFactory(args[0]), agentFactory(args[1]), moveTime, threads);
+		Result result = runner.play(games, stateFiles);
+		System.out.println(args[0] + " against " + args[1] + ": " + result);
+	}
+
+}
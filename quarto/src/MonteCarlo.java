@@ -1,6 +1,9 @@
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
 
 /*
@@ -12,11 +15,436 @@ public class MonteCarlo {
 	private int timeLimit;
 	private double cp;
 	private boolean symmetry;
+	
+	// also fold the piece attribute symmetries, only used together with symmetry
+	private boolean attributeSymmetry;
+	
+	// number of threads searching
+	private int threads = 1;
+	
+	// if set the threads share one tree (tree parallelism), otherwise each one builds its own tree (root parallelism)
+	private boolean treeParallel;
+	
+	// virtual loss is only needed while several threads descend the same tree
+	private boolean useVirtualLoss;
+	
+	// iterations run by all threads during the last search
+	private long iterations;
+	
+	// root of the last search, kept so the next search can continue from the matching subtree
+	private Node root;
+	
+	// if set, expand links to the existing node of a transposition instead of creating a new one
+	private boolean transpositions;
+	
+	// transposition tables have 2^tableSizeLog2 slots
+	private int tableSizeLog2 = 20;
+	
+	// transposition table of the kept tree
+	private TranspositionTable table;
+	
+	// tables of the other root-parallel trees, allocated once and cleared after every search
+	private TranspositionTable[] workerTables;
+	
+	// playouts run on the engine's scratch board, so nothing is allocated per iteration
+	private PlayoutEngine playoutEngine = new PlayoutEngine();
+	
+	// share of the playouts that take winning squares and avoid handing over winning pieces
+	private double heavyPlayoutRate;
+	
+	// if set, all-moves-as-first statistics are blended into the selection score (RAVE)
+	private boolean rave;
+	private double raveEquivalence = 1000;
+	
+	// if set, a node only gets another child once its visits allow it, see setProgressiveWidening
+	private boolean progressiveWidening;
+	private double wideningCoefficient = 1;
+	private double wideningExponent = 0.5;
+	
+	// scores the children while searching, see SelectionPolicy
+	private SelectionPolicy selectionPolicy;
+	
+	// the rule choosing the action played, see setFinalMoveRule
+	public static final int MAX_VALUE = 0;
+	public static final int MAX_VISITS = 1;
+	public static final int ROBUST_MAX = 2;
+	private int finalMoveRule = MAX_VALUE;
+	
+	// prior weight of a child that hands over a winning piece or leaves only winning pieces to hand over
+	private static final double BLUNDER_PRIOR = 0.05;
+	
+	// if set, proven wins and losses are propagated up the tree (MCTS-Solver)
+	private boolean mctsSolver;
+	
+	// if set, positions with few enough empty squares are solved exactly instead of searched
+	private boolean endgameSolver;
+	private EndgameSolver solver;
+	
+	// speed of the last solve, used to guess how many empty squares can be solved in time
+	private long solverNodesPerSecond = 2000000;
+	
+	// if set, a proof-number search runs next to the tree search once few enough squares are empty
+	private boolean proofNumberSearch;
+	private int proofNumberMaxEmptySquares = 12;
+	private ProofNumberSearch prover;
+	
+	// if set, only the root keeps a board and every thread makes and unmakes the moves on its own board
+	private boolean lazyBoards;
+	
+	// set to end the running search early, checked once per iteration
+	private volatile boolean stopped;
+	
+	// the search growing the kept tree during the other player's turn, null when not pondering
+	private Thread ponderThread;
 
 	public MonteCarlo(int timeLimit, double cp, boolean symmetry) {
 		this.timeLimit = timeLimit;
 		this.cp = cp;
 		this.symmetry = symmetry;
+		this.selectionPolicy = new Ucb1Policy(cp);
+	}
+	
+	/*
+	 * Progressive widening: a node with N visits may have at most
+	 * 		max(1, coefficient * N^exponent)
+	 * 	children, so TreePolicy descends into the existing children instead of
+	 * 	expanding until the node has been visited often enough. Since Expand
+	 * 	opens the actions in heuristic order (see orderActions), the
+	 * 	children opened first are the plausible ones.
+	 */
+	public void setProgressiveWidening(boolean progressiveWidening) {
+		this.progressiveWidening = progressiveWidening;
+	}
+	
+	public void setWideningParameters(double coefficient, double exponent) {
+		this.wideningCoefficient = coefficient;
+		this.wideningExponent = exponent;
+	}
+	
+	/*
+	 * the policy BestChild scores the children with while searching, UCB1
+	 * 	with the cp of the constructor by default
+	 */
+	public void setSelectionPolicy(SelectionPolicy selectionPolicy) {
+		this.selectionPolicy = selectionPolicy;
+	}
+	
+	/*
+	 * the rule for the action returned when the search is over:
+	 * 	MAX_VALUE	the child with the best Q/N (the default)
+	 * 	MAX_VISITS	the child searched most often
+	 * 	ROBUST_MAX	the child that has both, the search stops early for it
+	 * 				after 4/5 of the time and otherwise keeps going until
+	 * 				one exists or the time is up, in which case the most
+	 * 				searched child is played
+	 */
+	public void setFinalMoveRule(int finalMoveRule) {
+		this.finalMoveRule = finalMoveRule;
+	}
+	
+	/*
+	 * Attribute symmetry: flipping a characteristic of every piece or swapping
+	 * 	two characteristics does not change which lines win, so positions that
+	 * 	only differ that way have the same value. With symmetry also set, moves
+	 * 	and pieces leading to such positions are only expanded once and
+	 * 	transpositions are keyed by the folded canonical key, see Symmetry.
+	 */
+	public void setAttributeSymmetry(boolean attributeSymmetry) {
+		this.attributeSymmetry = attributeSymmetry;
+	}
+	
+	/*
+	 * Heavy playouts: DefaultPolicy plays a winning square whenever there is
+	 * 	one and only hands over a piece the other player can win with when
+	 * 	every piece is one (see PlayoutEngine). Random playouts throw away
+	 * 	most won positions, so the heavy ones give much less noisy values for
+	 * 	a small cost per playout.
+	 */
+	public void setHeavyPlayouts(boolean heavyPlayouts) {
+		setHeavyPlayoutRate(heavyPlayouts ? 1 : 0);
+	}
+	
+	// mixes the playout policies, each playout is heavy with probability heavyPlayoutRate
+	public void setHeavyPlayoutRate(double heavyPlayoutRate) {
+		this.heavyPlayoutRate = heavyPlayoutRate;
+		this.playoutEngine.setHeavyRate(heavyPlayoutRate);
+	}
+	
+	/*
+	 * RAVE: every node also keeps all-moves-as-first (AMAF) statistics for
+	 * 	its actions. After an iteration, a square the player at a
+	 * 	SelectMoveNode filled anywhere below the node (in the tree or in the
+	 * 	playout) counts as a visit of that square, and a piece the other
+	 * 	player placed below a SelectPieceNode as a visit of handing it over,
+	 * 	both with the iteration's result. While searching, BestChild scores
+	 * 	a child with
+	 * 		(1 - beta) * Q/N + beta * AMAF Q/AMAF N + exploration
+	 * 		beta = sqrt(k / (3 * N(v) + k))
+	 * 	so the AMAF values, which are available after a few iterations,
+	 * 	lead while N(v) is small and fade once the node has been visited
+	 * 	about k times. The final choice uses Q/N alone.
+	 * 
+	 * 	RAVE is not used with attribute symmetry: a node linked through a
+	 * 	canonical key may hold a transformed board, so the squares and pieces
+	 * 	recorded below it would be credited to the wrong actions above it.
+	 */
+	public void setRave(boolean rave) {
+		this.rave = rave;
+	}
+	
+	private boolean isRave() {
+		return rave && !isAttributeSymmetric();
+	}
+	
+	// the equivalence parameter k of RAVE
+	public void setRaveEquivalence(double raveEquivalence) {
+		this.raveEquivalence = raveEquivalence;
+	}
+	
+	// every search thread gets its own engine
+	private PlayoutEngine newPlayoutEngine() {
+		PlayoutEngine engine = new PlayoutEngine();
+		engine.setHeavyRate(heavyPlayoutRate);
+		return engine;
+	}
+	
+	/*
+	 * MCTS-Solver: terminal results are exact, so they are propagated up the
+	 * 	tree as proofs. A node is proven to the value of a child that wins for
+	 * 	the player acting at the node, or, once every child is proven, to the
+	 * 	best of their values. Proven nodes are treated like terminal nodes by
+	 * 	TreePolicy, BestChild skips proven children (a winning child is taken
+	 * 	at once) and the search stops as soon as the root is proven.
+	 */
+	public void setMctsSolver(boolean mctsSolver) {
+		this.mctsSolver = mctsSolver;
+	}
+	
+	/*
+	 * Endgame solver: once few squares are left, UCTSearch first gives the
+	 * 	exact solver (see EndgameSolver) half of its time. The number of empty
+	 * 	squares it tries is the largest e whose estimated tree size
+	 * 	(e! * e nodes) fits in that time at the speed measured on the last
+	 * 	solve, so it grows with the time limit and the machine. A proven win
+	 * 	or draw is played at once. If the solve runs out of time or proves
+	 * 	a loss (every action loses against perfect play), the tree search
+	 * 	gets the remaining time and picks the action that loses least often.
+	 */
+	public void setEndgameSolver(boolean endgameSolver) {
+		this.endgameSolver = endgameSolver;
+	}
+	
+	/*
+	 * Proof-number search: with at most maxEmptySquares empty squares,
+	 * 	UCTSearch starts a df-pn search (see ProofNumberSearch) on its own
+	 * 	thread next to the tree search. If it proves a win before the deadline
+	 * 	the tree search is stopped and the proven action is played, otherwise
+	 * 	the tree search decides as usual.
+	 */
+	public void setProofNumberSearch(boolean proofNumberSearch) {
+		this.proofNumberSearch = proofNumberSearch;
+	}
+	
+	public void setProofNumberMaxEmptySquares(int maxEmptySquares) {
+		this.proofNumberMaxEmptySquares = maxEmptySquares;
+	}
+	
+	/*
+	 * Lazy boards: nodes below the root keep no board, only the action
+	 * 	leading to them. Each search thread copies the root board once and
+	 * 	makes the moves on it on the way down (see Descent), then unmakes
+	 * 	them after the backup. Symmetric transposition keys are not used in
+	 * 	this mode, since a linked node must stand for exactly the position on
+	 * 	the thread's board. A node then takes about 125 bytes instead of 150,
+	 * 	for many more nodes see CompactMonteCarlo.
+	 */
+	public void setLazyBoards(boolean lazyBoards) {
+		this.lazyBoards = lazyBoards;
+	}
+	
+	// largest number of empty squares the solver is expected to finish within time milliseconds
+	public int getSolverThreshold(long time) {
+		double budget = (double) solverNodesPerSecond * time / 1000;
+		double estimate = 1;
+		int emptySquares = 1;
+		while (emptySquares < QuartoBitBoard.NUMBER_OF_SQUARES) {
+			double next = estimate / emptySquares * (emptySquares + 1) * (emptySquares + 1);
+			if (next > budget)
+				break;
+			estimate = next;
+			emptySquares++;
+		}
+		return emptySquares;
+	}
+	
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+	
+	public int getThreads() {
+		return this.threads;
+	}
+	
+	public void setTreeParallel(boolean treeParallel) {
+		this.treeParallel = treeParallel;
+	}
+	
+	public long getIterations() {
+		return this.iterations;
+	}
+	
+	/*
+	 * Transpositions: the same position reached through different move orders
+	 * 	is searched once. Nodes are keyed by a Zobrist hash of (board, piece to
+	 * 	place, player to act) and expand links to a node already in the table,
+	 * 	which turns the tree into a DAG. Every thread records the path it took
+	 * 	and backs up along it, so a shared node is updated once per visit
+	 * 	whichever parent it was reached from, and its parents all see the
+	 * 	combined statistics.
+	 */
+	public void setTranspositions(boolean transpositions) {
+		this.transpositions = transpositions;
+	}
+	
+	public void setTranspositionTableSize(int log2Size) {
+		this.tableSizeLog2 = log2Size;
+	}
+	
+	/*
+	 * Subtree reuse: the caller reports every action played after a search
+	 * 	(by either player) and the kept root moves down to the matching child,
+	 * 	so its N/Q statistics carry over to the next search. The rest of the
+	 * 	old tree can be collected: the transposition table is refilled with
+	 * 	the nodes still below the new root (see releaseDropped). If an action
+	 * 	is not in the tree (e.g. it was pruned by symmetry) the tree is dropped.
+	 */
+	public void pieceSelected(int pieceID) {
+		stopPondering();
+		advanceRoot(root instanceof SelectPieceNode ? pieceID : -1);
+	}
+	
+	public void movePlayed(int row, int column) {
+		stopPondering();
+		advanceRoot(root instanceof SelectMoveNode ? QuartoBitBoard.toSquare(row, column) : -1);
+	}
+	
+	/*
+	 * Pondering: while the other player thinks, the position it has to play
+	 * 	(place piece, or choose a piece if piece is null) is searched on a
+	 * 	background thread with the usual settings and no deadline, growing
+	 * 	the kept tree. Once the other player's action is reported through
+	 * 	pieceSelected or movePlayed, the search is stopped and the root moves
+	 * 	to the matching child, so the next UCTSearch continues a tree that
+	 * 	was searched on both players' time. The solvers only run in
+	 * 	UCTSearch.
+	 * 
+	 * 	The first piece of a game is not pondered: on the empty board
+	 * 	SelectPieceNode only lists piece 0, so the tree would be dropped
+	 * 	unless the other player happened to choose it.
+	 */
+	public synchronized void ponder(QuartoBitBoard board, final Integer piece) {
+		stopPondering();
+		if (piece == null && Integer.bitCount(board.getEmptySquares()) == QuartoBitBoard.NUMBER_OF_SQUARES)
+			return;
+		final QuartoBitBoard position = new QuartoBitBoard(board);
+		stopped = false;
+		ponderThread = new Thread(() -> runSearch(position, piece, Long.MAX_VALUE));
+		ponderThread.setDaemon(true);
+		ponderThread.start();
+	}
+	
+	// stops pondering and waits for the background search to leave the tree
+	public synchronized void stopPondering() {
+		if (ponderThread == null)
+			return;
+		stopped = true;
+		try {
+			ponderThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ponderThread = null;
+	}
+	
+	// action is a piece or a square like the root's actions, -1 drops the tree
+	private void advanceRoot(int action) {
+		if (root == null)
+			return;
+		
+		int index = root.findChild(action);
+		Node next = index < 0 ? null : root.getChildren().get(index);
+		if (next != null) {
+			next.setParentNode(null);
+			if (next.getBoard() == null)
+				next.setBoard(boardAfter(root, action));
+		}
+		root = next;
+		releaseDropped();
+	}
+	
+	/*
+	 * lets everything the new root does not reach be collected. Without
+	 * 	transpositions the tree below the root is all that is referenced.
+	 * 	With them the table still holds nodes of the dropped branches, and a
+	 * 	node linked from the kept subtree may have been created under a
+	 * 	dropped parent: the table is refilled with the kept nodes only and
+	 * 	such parent links are cut.
+	 */
+	private void releaseDropped() {
+		if (table == null)
+			return;
+		table.clear();
+		if (root == null)
+			return;
+		
+		Set<Node> kept = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		ArrayList<Node> stack = new ArrayList<Node>();
+		kept.add(root);
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			Node node = stack.remove(stack.size() - 1);
+			for (Node child : node.getChildren()) {
+				if (kept.add(child))
+					stack.add(child);
+			}
+		}
+		for (Node node : kept) {
+			if (node.getParentNode() != null && !kept.contains(node.getParentNode()))
+				node.setParentNode(null);
+			if (!(node instanceof TerminatingNode))
+				table.put(node.getKey(), node);
+		}
+	}
+	
+	// the board after action is played at node, which has a board
+	private QuartoBitBoard boardAfter(Node node, int action) {
+		if (node instanceof SelectPieceNode)
+			return node.getBoard();
+		QuartoBitBoard board = new QuartoBitBoard(node.getBoard());
+		board.insertPieceOnSquare(action, ((SelectMoveNode) node).getPiece());
+		return board;
+	}
+	
+	/*
+	 * returns the kept root if it holds the position being searched, otherwise a new root
+	 */
+	private Node getRoot(QuartoBitBoard board, Integer piece) {
+		if (root != null && board.equals(root.getBoard())) {
+			if (piece == null && root instanceof SelectPieceNode)
+				return root;
+			if (piece != null && root instanceof SelectMoveNode && ((SelectMoveNode) root).getPiece() == piece)
+				return root;
+		}
+		table = transpositions ? emptyTable(table) : null;
+		return createRoot(board, piece);
+	}
+	
+	// table cleared if it has the current size, otherwise a new table
+	private TranspositionTable emptyTable(TranspositionTable table) {
+		if (table == null || table.getLog2Size() != tableSizeLog2)
+			return new TranspositionTable(tableSizeLog2);
+		table.clear();
+		return table;
 	}
 
 	/*
@@ -29,47 +457,351 @@ public class MonteCarlo {
 	 * 		return action(BestChild(v0,0))
 	 */
 	public String UCTSearch(QuartoBoard board, Integer piece) {
-		// create root node v0 with state s0
+		return UCTSearch(new QuartoBitBoard(board), piece);
+	}
+
+	public String UCTSearch(QuartoBitBoard board, Integer piece) {
+		long endTime = System.currentTimeMillis() + (this.timeLimit);
+		stopPondering();
+		
+		if (endgameSolver) {
+			String action = solveEndgame(board, piece, endTime - this.timeLimit / 2);
+			if (action != null)
+				return action;
+		}
+		
+		stopped = false;
+		ProofThread proofThread = null;
+		if (proofNumberSearch && Integer.bitCount(board.getEmptySquares()) <= proofNumberMaxEmptySquares) {
+			if (prover == null)
+				prover = new ProofNumberSearch();
+			proofThread = new ProofThread(board, piece, endTime);
+			proofThread.start();
+		}
+		
 		Node root;
-		if (piece == null) {
-			root = new SelectPieceNode(board);
+		if (finalMoveRule == ROBUST_MAX) {
+			root = runSearch(board, piece, endTime - this.timeLimit / 5);
+			// keep searching in short rounds until the most searched child also has the best value
+			while (!stopped && !(mctsSolver && root.isProven()) && System.currentTimeMillis() < endTime
+					&& maxVisitsChild(root) != maxValueChild(root)) {
+				root = runSearch(board, piece, Math.min(endTime, System.currentTimeMillis() + this.timeLimit / 20));
+			}
+		} else {
+			root = runSearch(board, piece, endTime);
+		}
+
+		// return action(BestChild(v0,0))
+		 printTree(root);
+		
+		if (proofThread != null) {
+			String action = proofThread.finish();
+			if (action != null)
+				return action;
+		}
+		
+		return root.formatAction(root.getChildAction(bestChild(root, 0)));
+	}
+	
+	// searches the position until endTime, continuing the kept tree if it holds the position
+	private Node runSearch(QuartoBitBoard board, Integer piece, long endTime) {
+		Node root;
+		if (threads > 1 && treeParallel) {
+			root = treeParallelSearch(board, piece, endTime);
+		} else if (threads > 1) {
+			root = rootParallelSearch(board, piece, endTime);
 		} else {
-			if (symmetry) {
-				root = new SelectMoveNode(board, piece);
+			// create root node v0 with state s0
+			root = getRoot(board, piece);
+			iterations = search(root, endTime, playoutEngine, table);
+		}
+		this.root = root;
+		return root;
+	}
+	
+	/*
+	 * runs the proof-number search for one UCTSearch and stops the tree search
+	 * 	when it proves a win
+	 */
+	private class ProofThread extends Thread {
+		private final QuartoBitBoard board;
+		private final Integer piece;
+		private final long endTime;
+		private int value = ProofNumberSearch.UNKNOWN;
+		
+		ProofThread(QuartoBitBoard board, Integer piece, long endTime) {
+			super("ProofNumberSearch");
+			this.board = new QuartoBitBoard(board);
+			this.piece = piece;
+			this.endTime = endTime;
+			setDaemon(true);
+		}
+		
+		public void run() {
+			if (piece == null) {
+				value = prover.solveSelection(board, endTime);
 			} else {
-				root = new SelectMoveNode(board);
+				value = prover.solvePlacement(board, piece, endTime);
 			}
-			((SelectMoveNode) root).setAction(piece);
+			if (value == ProofNumberSearch.WIN)
+				stopped = true;
 		}
-
-		long startTime = System.currentTimeMillis();
-		long endTime = startTime + (this.timeLimit);
-		while (System.currentTimeMillis() < endTime) {
+		
+		// waits for the search and returns the proven action, or null if no win was proven
+		String finish() {
+			prover.stop();
+			try {
+				join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			System.out.println("Proof-number search: " + ProofNumberSearch.describe(value) + ", " + prover.getNodes() + " nodes");
+			if (value != ProofNumberSearch.WIN)
+				return null;
+			if (piece == null)
+				return QuartoAgent.formatPiece(prover.getBestPiece());
+			return QuartoAgent.formatSquare(prover.getBestSquare());
+		}
+	}
+	
+	/*
+	 * returns the action proven to win or draw, or null if the position has
+	 * 	too many empty squares, the solver ran out of time or every action loses
+	 */
+	private String solveEndgame(QuartoBitBoard board, Integer piece, long deadline) {
+		int emptySquares = Integer.bitCount(board.getEmptySquares());
+		if (emptySquares > getSolverThreshold(deadline - System.currentTimeMillis()))
+			return null;
+		
+		if (solver == null)
+			solver = new EndgameSolver();
+		int value;
+		if (piece == null) {
+			value = solver.solveSelection(board, deadline);
+		} else {
+			value = solver.solvePlacement(board, piece, deadline);
+		}
+		
+		// very short solves say little about the speed
+		if (solver.getNodes() > 100000)
+			solverNodesPerSecond = solver.getNodesPerSecond();
+		System.out.println("Solver: " + EndgameSolver.describe(value) + " with " + emptySquares + " empty squares, "
+				+ solver.getNodes() + " nodes, " + solver.getNodesPerSecond() + " nodes/sec");
+		
+		if (value == EndgameSolver.UNKNOWN || value == EndgameSolver.LOSS)
+			return null;
+		
+		// the rest of the game is solved, the kept tree is not needed any more
+		this.root = null;
+		if (piece == null) {
+			return QuartoAgent.formatPiece(solver.getBestPiece());
+		}
+		return QuartoAgent.formatSquare(solver.getBestSquare());
+	}
+	
+	private boolean isAttributeSymmetric() {
+		return symmetry && attributeSymmetry;
+	}
+	
+	/*
+	 * key of a state in the transposition table. With attribute symmetry
+	 * 	symmetric states share a key, which is fine as long as every node keeps
+	 * 	its own board: a linked node is searched on its own board and its value
+	 * 	is the same for all the states it stands for.
+	 */
+	private long stateKey(QuartoBitBoard board, int piece, boolean player) {
+		if (!isAttributeSymmetric())
+			return Zobrist.key(board, piece, player);
+		if (lazyBoards)
+			return Zobrist.key(board, piece, player);
+		long key = Symmetry.canonicalKey(board, piece, true);
+		return player ? key : key ^ Zobrist.OTHER_PLAYER;
+	}
+	
+	private Node createRoot(QuartoBitBoard board, Integer piece) {
+		Node root;
+		if (piece == null) {
+			root = new SelectPieceNode(board);
+		} else {
+			root = new SelectMoveNode(board, piece);
+		}
+		root.setKey(stateKey(board, piece == null ? -1 : piece, root.player));
+		return root;
+	}
+	
+	/*
+	 * runs UCT iterations on the tree under root until endTime, returns the number of iterations
+	 * 	table is the tree's transposition table, or null
+	 */
+	private long search(Node root, long endTime, PlayoutEngine engine, TranspositionTable table) {
+		// the nodes visited by the current iteration, from the root down
+		ArrayList<Node> path = new ArrayList<Node>();
+		// the action taken at each node of the path but the last, a piece or a square
+		int[] actions = new int[2 * QuartoBitBoard.NUMBER_OF_SQUARES + 1];
+		// the board of the last node on the path in lazy boards mode
+		Descent descent = lazyBoards ? new Descent(root.getBoard()) : null;
+		long count = 0;
+		// at least one iteration, so the root has a child to return however short the time is
+		// 	or however soon the proof thread stops the search
+		while (count == 0 || (System.currentTimeMillis() < endTime && !stopped)) {
+			// nothing is left to learn once the root is proven
+			if (mctsSolver && root.isProven())
+				break;
+			
 			// v1 <= TreePolicy(v0)
-			Node child = treePolicy(root);
+			path.clear();
+			Node child = treePolicy(root, path, actions, table, descent);
+			QuartoBitBoard board = descent != null ? descent.board : child.getBoard();
 			
 			// delta <= DefaultPolicy(s(v1))
 			int score;
-			if (child instanceof SelectMoveNode) {
-				piece = parsePiece(child.getAction());
-				score = defaultPolicy(board, piece, child.player);
+			boolean playout = false;
+			if (mctsSolver && child.isProven()) {
+				score = child.getProven();
+			} else if (child instanceof SelectMoveNode) {
+				score = defaultPolicy(engine, board, ((SelectMoveNode) child).getPiece(), child.player);
+				playout = true;
 			} else if (child instanceof SelectPieceNode){
-				int[] move = parseMove(child.getAction());
-				QuartoBoard copyBoard = new QuartoBoard(board);
-				copyBoard.insertPieceOnBoard(move[0], move[1], piece);
-				score = defaultPolicy(copyBoard, null, child.player);
-			} else {
+				score = defaultPolicy(engine, board, null, child.player);
+				playout = true;
+			} else if (child instanceof TerminatingNode) {
 				score = ((TerminatingNode) child).getValue();
+			} else {
+				score = child.getProven();
 			}
 			
 			//Backup(v1, delta)
-			backup(child, score);
+			backup(path, score);
+			if (isRave())
+				backupRave(path, actions, score, playout ? engine : null);
+			if (descent != null)
+				descent.unmakeAll();
+			count++;
 		}
-
-		// return action(BestChild(v0,0))
-		 printTree("Root", root);
+		return count;
+	}
+	
+	/*
+	 * Root parallelism: every thread builds an independent tree from the same
+	 * 	root state, with its own playout engine. When the time is up the Q/N
+	 * 	statistics of the root children are summed into the first tree, which
+	 * 	is then used for the final BestChild(v0,0) decision. The first thread
+	 * 	continues the kept tree when there is one.
+	 */
+	private Node rootParallelSearch(final QuartoBitBoard board, final Integer piece, final long endTime) {
+		final Node[] roots = new Node[threads];
+		final long[] counts = new long[threads];
+		Thread[] workers = new Thread[threads];
 		
-		return bestChild(root, 0).getAction();
+		roots[0] = getRoot(board, piece);
+		// every tree needs its own table, the other trees are thrown away after the search
+		if (workerTables == null || workerTables.length != threads)
+			workerTables = new TranspositionTable[threads];
+		for (int i = 1; i < threads; i++) {
+			if (!transpositions)
+				workerTables[i] = null;
+			else if (workerTables[i] == null || workerTables[i].getLog2Size() != tableSizeLog2)
+				workerTables[i] = new TranspositionTable(tableSizeLog2);
+		}
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					TranspositionTable workerTable = table;
+					if (index > 0) {
+						roots[index] = createRoot(board, piece);
+						workerTable = workerTables[index];
+					}
+					counts[index] = search(roots[index], endTime, newPlayoutEngine(), workerTable);
+				}
+			}, "MonteCarlo-" + i);
+			workers[i].start();
+		}
+		
+		iterations = 0;
+		for (int i = 0; i < threads; i++) {
+			try {
+				workers[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			iterations += counts[i];
+		}
+		
+		Node root = roots[0];
+		for (int i = 1; i < threads; i++) {
+			mergeRoots(root, roots[i]);
+			// the other trees are thrown away, their tables must not keep them alive until the next search
+			if (workerTables[i] != null)
+				workerTables[i].clear();
+		}
+		System.out.println("Iterations: " + iterations + " on " + threads + " threads");
+		return root;
+	}
+	
+	/*
+	 * Tree parallelism: all threads descend the same tree. Node statistics are
+	 * 	updated atomically, expansion locks only the node being expanded and
+	 * 	virtual loss spreads the threads over different paths.
+	 */
+	private Node treeParallelSearch(QuartoBitBoard board, Integer piece, final long endTime) {
+		final Node root = getRoot(board, piece);
+		final long[] counts = new long[threads];
+		Thread[] workers = new Thread[threads];
+		
+		useVirtualLoss = true;
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					counts[index] = search(root, endTime, newPlayoutEngine(), table);
+				}
+			}, "MonteCarlo-" + i);
+			workers[i].start();
+		}
+		
+		iterations = 0;
+		for (int i = 0; i < threads; i++) {
+			try {
+				workers[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			iterations += counts[i];
+		}
+		useVirtualLoss = false;
+		
+		System.out.println("Iterations: " + iterations + " on " + threads + " threads sharing one tree");
+		return root;
+	}
+	
+	/*
+	 * adds the statistics of other's children to the matching children of root,
+	 * 	children only other has expanded are moved over
+	 */
+	private void mergeRoots(Node root, Node other) {
+		root.setN(root.getN() + other.getN());
+		root.setQ(root.getQ() + other.getQ());
+		
+		List<Node> otherChildren = other.getChildren();
+		for (int i = 0; i < otherChildren.size(); i++) {
+			Node otherChild = otherChildren.get(i);
+			int action = other.getChildAction(i);
+			int index = root.findChild(action);
+			if (index < 0) {
+				root.addChild(otherChild, action);
+			} else {
+				Node match = root.getChildren().get(index);
+				match.setN(match.getN() + otherChild.getN());
+				match.setQ(match.getQ() + otherChild.getQ());
+				match.setDecisive(match.getDecisive() + otherChild.getDecisive());
+				if (otherChild.isProven())
+					match.setProven(otherChild.getProven());
+			}
+		}
+		if (other.isProven())
+			root.setProven(other.getProven());
 	}
 	
 	/*
@@ -87,112 +819,453 @@ public class MonteCarlo {
 	 *  
 	 *  Cp =  1 / Math.sqrt(2) is mentioned in the paper
 	 *  
+	 *  with progressive widening v only counts as fully expanded for now
+	 *  	once it has as many children as its visits allow
+	 *  
+	 *  with the MCTS-Solver a proven node is terminal as well
+	 *  
+	 *  the action taken at path.get(i) is stored in actions[i]
+	 *  
+	 *  in lazy boards mode every move on the way down is made on descent
 	 */
-	private Node treePolicy(Node node) {
-		if (node instanceof TerminatingNode)
-			return node;
-		if (node.getRemainingMoves().size() != 0)
-			return expand(node);
-		return bestChild(node, this.cp);
+	private Node treePolicy(Node node, ArrayList<Node> path, int[] actions, TranspositionTable table, Descent descent) {
+		path.add(node);
+		if (useVirtualLoss)
+			node.addVirtualLoss();
+		while (!(node instanceof TerminatingNode) && !(mctsSolver && node.isProven())) {
+			if (!node.isFullyExpanded() && canWiden(node)) {
+				Node child = expand(node, actions, path.size() - 1, table, descent);
+				// another thread may have taken the last remaining move
+				if (child != null) {
+					path.add(child);
+					return child;
+				}
+			}
+			int index = bestChild(node, this.cp);
+			if (index < 0 && !node.isFullyExpanded()) {
+				// every child allowed by progressive widening is proven, so the next one is opened
+				Node child = expand(node, actions, path.size() - 1, table, descent);
+				if (child != null) {
+					path.add(child);
+					return child;
+				}
+			}
+			if (index < 0) {
+				// every child was proven through another parent (a transposition)
+				prove(node);
+				break;
+			}
+			int action = node.getChildAction(index);
+			actions[path.size() - 1] = action;
+			if (descent != null && node instanceof SelectMoveNode)
+				descent.make(action, ((SelectMoveNode) node).getPiece());
+			node = node.getChildren().get(index);
+			path.add(node);
+			if (useVirtualLoss)
+				node.addVirtualLoss();
+		}
+		return node;
 	}
 
 	/*
 	 *  function Expand(v)
 	 *  	choose action from untried actions for the node v
+	 *  	(the first one in the order of orderActions)
 	 *  	add a new child v' to v
 	 *  		with s(v') = Result(s(v),action)
 	 *  		and action(v') = action 
 	 *  	return v'
+	 *  
+	 *  the node is locked while the action is taken and its child added, so
+	 *  	two threads never expand the same action. Returns null if there was
+	 *  	no action left
+	 *  
+	 *  with a transposition table, a child whose state is already in the
+	 *  	table is linked instead of created
+	 *  
+	 *  the action taken is stored in actions[depth]
+	 *  
+	 *  in lazy boards mode the state is the board of descent, the move is made
+	 *  	on it and the new child does not keep it
 	 */
-	private Node expand(Node node) {
-		Node child;
-		
-		String action = node.getRemainingMoves().get(0);
-		if (node instanceof SelectPieceNode) {
-			if (symmetry) {
-				int pieceId = parsePiece(action);
-				child = new SelectMoveNode(node.getBoard(), pieceId);				
-			} else {
-				child = new SelectMoveNode(node.getBoard());
+	private Node expand(Node node, int[] actions, int depth, TranspositionTable table, Descent descent) {
+		synchronized (node) {
+			QuartoBitBoard board = descent != null ? descent.board : node.getBoard();
+			// the actions are listed and ordered the first time the node is expanded, the best one is taken first
+			if (node.getActions() == null) {
+				int[] legal = legalActions(node, board);
+				orderActions(node, legal, board);
+				node.setActions(legal);
 			}
-		} else {
-			QuartoBoard copyBoard = new QuartoBoard(node.getBoard());
-			int piece = parsePiece(node.getAction());
-			int[] move = parseMove(action);
-			copyBoard.insertPieceOnBoard(move[0], move[1], piece);
+			if (node.getRemainingActions() == 0)
+				return null;
+			
+			Node child = null;
+			long key = 0;
+			boolean transposition = false;
 			
-			if (isWin(copyBoard, move[0], move[1])) {
-				if (node.player)
-					child = new TerminatingNode(copyBoard, -1);
-				child = new TerminatingNode(copyBoard, 1);
-			} else if (copyBoard.checkIfBoardIsFull()) {
-				child = new TerminatingNode(copyBoard, 0);
+			int action = node.getNextAction();
+			if (node instanceof SelectPieceNode) {
+				int piece = action;
+				key = stateKey(board, piece, !node.player);
+				if (table != null)
+					child = table.get(key);
+				transposition = child != null;
+				if (child == null) {
+					// choosing a piece does not change the board, so the child can share it
+					child = new SelectMoveNode(board, piece);
+					child.setPrior(heuristicPrior(board, piece));
+				}
+			} else {
+				int piece = ((SelectMoveNode) node).getPiece();
+				QuartoBitBoard copyBoard;
+				if (descent != null) {
+					descent.make(action, piece);
+					copyBoard = descent.board;
+				} else {
+					copyBoard = new QuartoBitBoard(board);
+					copyBoard.insertPieceOnSquare(action, piece);
+				}
+				
+				if (isWin(copyBoard, QuartoBitBoard.getRow(action), QuartoBitBoard.getColumn(action))) {
+					child = new TerminatingNode(copyBoard, node.player ? 1 : -1);
+				} else if (copyBoard.checkIfBoardIsFull()) {
+					child = new TerminatingNode(copyBoard, 0);
+				} else {
+					key = stateKey(copyBoard, -1, node.player);
+					if (table != null)
+						child = table.get(key);
+					transposition = child != null;
+					if (child == null) {
+						child = new SelectPieceNode(copyBoard);
+						child.setPrior(heuristicPrior(copyBoard, -1));
+					}
+				}
+			}
+			if (descent != null && !transposition)
+				child.setBoard(null);
+			// other threads must not see a child without visits
+			if (useVirtualLoss)
+				child.addVirtualLoss();
+			if (transposition) {
+				// the node was found in the table and already has a parent
+				node.linkChild(child, action);
 			} else {
-				child = new SelectPieceNode(copyBoard);
+				child.setKey(key);
+				node.addChild(child, action);
+				if (table != null && !(child instanceof TerminatingNode))
+					table.put(key, child);
+			}
+			actions[depth] = action;
+			return child;
+		}
+	}
+	
+	// checks if progressive widening lets node have another child
+	private boolean canWiden(Node node) {
+		if (!progressiveWidening)
+			return true;
+		double allowed = wideningCoefficient * Math.pow(node.getN(), wideningExponent);
+		return node.getChildren().size() < Math.max(1, allowed);
+	}
+	
+	/*
+	 * the actions of node on board in board order, with symmetry the moves
+	 * 	and pieces leading to symmetric positions only once. On the empty
+	 * 	board every piece and the centre square stand for all the others.
+	 */
+	private int[] legalActions(Node node, QuartoBitBoard board) {
+		int mask;
+		if (node instanceof SelectPieceNode) {
+			mask = isAttributeSymmetric() ? Symmetry.distinctPieces(board) : board.getUnplayedPieces();
+			if (Integer.bitCount(mask) == QuartoBitBoard.NUMBER_OF_PIECES)
+				mask = 1;
+		} else {
+			int piece = ((SelectMoveNode) node).getPiece();
+			mask = symmetry ? Symmetry.distinctMoves(board, piece, isAttributeSymmetric()) : board.getEmptySquares();
+			if (Integer.bitCount(mask) == QuartoBitBoard.NUMBER_OF_SQUARES)
+				mask = 1 << QuartoBitBoard.toSquare(2, 2);
+		}
+		
+		int[] actions = new int[Integer.bitCount(mask)];
+		for (int i = 0; mask != 0; i++) {
+			actions[i] = Integer.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+		}
+		return actions;
+	}
+	
+	/*
+	 * sorts the actions of node by a static score, keeping the board
+	 * 	order between actions with the same score:
+	 * 	placing a piece	3 for a square it wins on, 2 for a square that
+	 * 					creates no new threat line (see
+	 * 					QuartoBitBoard.getThreatLines), 1 for one that does
+	 * 					and 0 if every piece left to hand over would win
+	 * 	choosing a piece	2 for a safe piece, 0 for one that wins somewhere
+	 * 
+	 * 	the actions scored 0 are those heuristicPrior gives BLUNDER_PRIOR, so
+	 * 	the sum of the priors of all the actions is stored on the node for
+	 * 	PUCT to normalize by
+	 */
+	private static void orderActions(Node node, int[] actions, QuartoBitBoard board) {
+		if (actions.length < 2)
+			return;
+		
+		int[] scores = new int[actions.length];
+		if (node instanceof SelectMoveNode) {
+			int piece = ((SelectMoveNode) node).getPiece();
+			int winning = board.getWinningSquares(piece);
+			int threats = board.getThreatLines();
+			// the node's board may be shared with other nodes, so the moves are tried on a copy
+			QuartoBitBoard scratch = new QuartoBitBoard(board);
+			for (int i = 0; i < scores.length; i++) {
+				int square = actions[i];
+				if ((winning & (1 << square)) != 0) {
+					scores[i] = 3;
+					continue;
+				}
+				scratch.insertPieceOnSquare(square, piece);
+				if (scratch.getSafePieces() == 0)
+					scores[i] = 0;
+				else
+					scores[i] = (scratch.getThreatLines() & ~threats) == 0 ? 2 : 1;
+				scratch.removePieceFromSquare(square);
+			}
+		} else {
+			int unsafe = board.getUnsafePieces();
+			for (int i = 0; i < scores.length; i++)
+				scores[i] = (unsafe & (1 << actions[i])) != 0 ? 0 : 2;
+		}
+		
+		double priorTotal = 0;
+		for (int score : scores)
+			priorTotal += score == 0 ? BLUNDER_PRIOR : 1;
+		node.setPriorTotal(priorTotal);
+		
+		int[] ordered = new int[actions.length];
+		int count = 0;
+		for (int score = 3; score >= 0; score--) {
+			for (int i = 0; i < scores.length; i++) {
+				if (scores[i] == score)
+					ordered[count++] = actions[i];
 			}
 		}
-		node.addChild(child, action);
-		return child;
+		System.arraycopy(ordered, 0, actions, 0, count);
+	}
+	
+	/*
+	 * the prior weight of a new child for PUCT: handing over a piece that
+	 * 	wins somewhere (piece >= 0), or placing a piece so that every piece
+	 * 	left to hand over wins somewhere (piece == -1), loses at once against
+	 * 	any sensible opponent and gets BLUNDER_PRIOR, everything else 1
+	 */
+	private static double heuristicPrior(QuartoBitBoard board, int piece) {
+		if (piece >= 0)
+			return board.getWinningSquares(piece) != 0 ? BLUNDER_PRIOR : 1;
+		return board.getSafePieces() == 0 ? BLUNDER_PRIOR : 1;
+	}
+	
+	/*
+	 * the board a search thread is at in lazy boards mode, with the squares
+	 * 	filled since the root so they can be emptied again
+	 */
+	private static class Descent {
+		final QuartoBitBoard board;
+		private final int[] squares = new int[QuartoBitBoard.NUMBER_OF_SQUARES];
+		private int count;
+		
+		Descent(QuartoBitBoard root) {
+			this.board = new QuartoBitBoard(root);
+		}
+		
+		void make(int square, int piece) {
+			board.insertPieceOnSquare(square, piece);
+			squares[count++] = square;
+		}
+		
+		void unmakeAll() {
+			while (count > 0)
+				board.removePieceFromSquare(squares[--count]);
+		}
 	}
 	
 	/*
 	 *  function BestChild(v, delta)
 	 *  	return argmax of c in children of v: evaluate(c, delta)
+	 *  
+	 *  with the MCTS-Solver a child proven to win for the player at v is
+	 *  	returned at once and proven children are skipped while searching
+	 *  	(delta != 0). The final choice (delta == 0) scores a proven draw
+	 *  	at its exact value (or its visits, depending on the final move rule) and only falls back to a proven loss if every
+	 *  	child loses. While searching -1 is returned if every child is
+	 *  	proven.
+	 *  
+	 *  returns the index of the child in the node's children, so the action
+	 *  	leading to it can be looked up directly
 	 */
-	private Node bestChild(Node node, double delta) {
-		return argmax(node, delta);
+	private int bestChild(Node node, double delta) {
+		if (!mctsSolver)
+			return argmax(node, delta);
+		
+		List<Node> children = node.getChildren();
+		int simulations = node.getN() + node.getVirtualLoss();
+		int mover = node.player ? 1 : -1;
+		
+		double maxValue = Double.NEGATIVE_INFINITY;
+		int maxIndex = -1;
+		for (int i = 0; i < children.size() ; i++) {
+			Node child = children.get(i);
+			
+			double value;
+			if (child.isProven()) {
+				int outcome = child.getProven() * mover;
+				if (outcome > 0)
+					return i;
+				if (delta != 0 || outcome < 0)
+					continue;
+				value = finalMoveRule == MAX_VALUE ? 0 : child.getN();
+			} else {
+				value = evaluate(node, i, child, simulations, delta);
+			}
+			
+			if (value > maxValue) {
+				maxValue = value;
+				maxIndex = i;
+			}
+		}
+		
+		if (maxIndex < 0 && delta == 0)
+			return argmax(node, delta);
+		return maxIndex;
 	}
 		
-	private Node argmax(Node node, double delta) {
-		ArrayList<Node> children = node.getChildren();
+	private int argmax(Node node, double delta) {
+		List<Node> children = node.getChildren();
+		int simulations = node.getN() + node.getVirtualLoss();
 		
-		double maxValue = evaluate(children.get(0), node.getN(), delta);
-		Node maxNode = children.get(0);
+		double maxValue = evaluate(node, 0, children.get(0), simulations, delta);
+		int maxIndex = 0;
 		
 		for (int i = 1; i < children.size() ; i++) {
 			Node child = children.get(i);
 			
-			double value = evaluate(child, node.getN(), delta);
+			double value = evaluate(node, i, child, simulations, delta);
 			
 			if (value > maxValue) {
 				maxValue = value;
-				maxNode = child;
+				maxIndex = i;
 			}
 		}
-		return maxNode;
+		return maxIndex;
 	}
 	
-	private void printTree(String name, Node node) {
-		System.out.println(name+ ": Q=>"+node.getQ()+", N=>"+node.getN());
-		ArrayList<Node> children = node.getChildren();
-		for (int i = 0; i < children.size() ; i++) {
-			printTree("\t"+children.get(i).getAction(), children.get(i));
+	/*
+	 * proves node from its children if possible: to the value of a child that
+	 * 	wins for the player acting at node, or to the best value for that
+	 * 	player once every child is expanded and proven. Returns whether node
+	 * 	is proven
+	 */
+	private boolean prove(Node node) {
+		if (node.isProven())
+			return true;
+		
+		int mover = node.player ? 1 : -1;
+		boolean allProven = node.isFullyExpanded();
+		int best = -mover;
+		for (Node child : node.getChildren()) {
+			if (!child.isProven()) {
+				allProven = false;
+				continue;
+			}
+			int value = child.getProven();
+			if (value == mover) {
+				node.setProven(value);
+				return true;
+			}
+			if (value * mover > best * mover)
+				best = value;
 		}
-		if ("Root" == name) {
-			System.out.println("Best Action: " + bestChild(node, 0).getAction());
+		
+		if (allProven)
+			node.setProven(best);
+		return allProven;
+	}
+	
+	/*
+	 * prints the root and its children, the deeper levels are too big to print
+	 */
+	private void printTree(Node root) {
+		System.out.println("Root: Q=>"+root.getQ()+", N=>"+root.getN());
+		List<Node> children = root.getChildren();
+		for (int i = 0; i < children.size() ; i++) {
+			Node child = children.get(i);
+			String proof = child.isProven() ? ", proven " + EndgameSolver.describe(root.player ? child.getProven() : -child.getProven()) : "";
+			System.out.println("\t"+root.formatAction(root.getChildAction(i))+": Q=>"+child.getQ()+", N=>"+child.getN()+proof);
 		}
+		System.out.println("Best Action: " + root.formatAction(root.getChildAction(bestChild(root, 0))));
 	}
 	
 	/*
-	 * BestChild equation from paper
+	 * scores the child at index of parent with the selection policy while
+	 * 	searching (delta != 0), and with the final move rule for the final
+	 * 	choice (delta == 0)
+	 * 
+	 * with RAVE the AMAF value of the child's action is blended into Q/N
+	 * 	while searching
 	 */
-	private double evaluate(Node node, int simulations, double delta) {
-		return (double)node.getQ() / node.getN() + delta*Math.sqrt(2*Math.log(simulations) / node.getN());
+	private double evaluate(Node parent, int index, Node node, int simulations, double delta) {
+		// every thread still searching below the node counts as a lost visit
+		int virtualLoss = node.getVirtualLoss();
+		int n = node.getN() + virtualLoss;
+		int q = node.getQ() - virtualLoss;
+		double value = (double)q / n;
+		if (delta == 0)
+			return finalMoveRule == MAX_VALUE ? value : n;
+		
+		if (isRave()) {
+			int action = parent.getChildAction(index);
+			int raveN = parent.getRaveN(action);
+			if (raveN > 0) {
+				double beta = Math.sqrt(raveEquivalence / (3 * simulations + raveEquivalence));
+				value = (1 - beta) * value + beta * parent.getRaveQ(action) / raveN;
+			}
+		}
+		// normalized over all the parent's actions, not only the children expanded so far
+		double prior = node.getPrior() / parent.getPriorTotal();
+		return selectionPolicy.score(value, n, node.getDecisive() + virtualLoss, simulations, prior);
+	}
+	
+	private Node maxVisitsChild(Node node) {
+		Node best = null;
+		for (Node child : node.getChildren()) {
+			if (best == null || child.getN() > best.getN())
+				best = child;
+		}
+		return best;
+	}
+	
+	private Node maxValueChild(Node node) {
+		Node best = null;
+		for (Node child : node.getChildren()) {
+			if (best == null || (double) child.getQ() / child.getN() > (double) best.getQ() / best.getN())
+				best = child;
+		}
+		return best;
 	}
 
 	/*
 	 *  return score from randomly simulated game
+	 *  
+	 *  scores are always from player1's point of view (the player at the root):
+	 *  	1 is a win, 0 a draw and -1 a loss
 	 */
-	private int defaultPolicy(QuartoBoard board, Integer piece, Boolean player1) {
-		QuartoBoard copyBoard = new QuartoBoard(board);
-		int score;
+	private int defaultPolicy(PlayoutEngine engine, QuartoBitBoard board, Integer piece, Boolean player1) {
 		if (piece == null) {
-			piece = randomPieceSelection(copyBoard);
-			score = playGame(copyBoard, piece, false);
-		} else {
-			score = playGame(copyBoard, piece, true);
+			// player1 hands the piece over, so the other player places it
+			return engine.playGameFromPieceSelection(board, player1);
 		}
-		return score;
+		return engine.playGame(board, piece, player1);
 	}
 
 	/*
@@ -202,32 +1275,78 @@ public class MonteCarlo {
 	 *  		Q(v) <= Q(v) + delta(v,p)
 	 *  	v <= parent of v
 	 *  	
+	 *  Q(v) is kept from the point of view of the player who chose the
+	 *  	action leading to v, which is the player acting at the parent
+	 *  
+	 *  the path recorded by TreePolicy is followed rather than the parent
+	 *  	links, since a transposition can be reached from several parents
+	 *  
+	 *  with the MCTS-Solver a proof at the end of the path is carried up for
+	 *  	as long as the nodes above it can be proven
 	 */
-	private void backup(Node node, int score) {
-		while (node != null) {
-			node.setN(node.getN()+1);
-			if (node.player){
-				node.setQ(node.getQ()+score);
-			} else {
-				node.setQ(node.getQ()-score);
-			}
-			node = node.getParentNode();
+	private void backup(ArrayList<Node> path, int score) {
+		boolean proving = mctsSolver && path.get(path.size() - 1).isProven();
+		for (int i = path.size() - 1; i >= 0; i--) {
+			Node node = path.get(i);
+			boolean player1 = i == 0 ? node.player : path.get(i - 1).player;
+			node.update(player1 ? score : -score);
+			if (useVirtualLoss)
+				node.removeVirtualLoss();
+			if (proving)
+				proving = prove(node);
 		}
 	}
 	
-	private int parsePiece(String piece) {
-		return Integer.parseInt(piece, 2);
+	/*
+	 * updates the AMAF statistics of the nodes on the path above the leaf,
+	 * 	engine is the engine that played from the leaf or null if the leaf
+	 * 	was scored without a playout
+	 * 
+	 * the path is walked up from the leaf, adding the move made at each node
+	 * 	to the squares and pieces placed by its player, so every node is
+	 * 	updated with the moves made at or below it
+	 */
+	private void backupRave(ArrayList<Node> path, int[] actions, int score, PlayoutEngine engine) {
+		int player1Squares = 0, player1Pieces = 0, player2Squares = 0, player2Pieces = 0;
+		if (engine != null) {
+			player1Squares = engine.getSquaresPlacedBy(true);
+			player1Pieces = engine.getPiecesPlacedBy(true);
+			player2Squares = engine.getSquaresPlacedBy(false);
+			player2Pieces = engine.getPiecesPlacedBy(false);
+		}
+		for (int i = path.size() - 2; i >= 0; i--) {
+			Node node = path.get(i);
+			int delta = node.player ? score : -score;
+			if (node instanceof SelectMoveNode) {
+				int square = actions[i];
+				int piece = ((SelectMoveNode) node).getPiece();
+				if (node.player) {
+					player1Squares |= 1 << square;
+					player1Pieces |= 1 << piece;
+				} else {
+					player2Squares |= 1 << square;
+					player2Pieces |= 1 << piece;
+				}
+				node.updateRave(node.player ? player1Squares : player2Squares, delta);
+			} else {
+				// a piece handed over is placed by the other player
+				node.updateRave(node.player ? player2Pieces : player1Pieces, delta);
+			}
+		}
 	}
 	
-	private int[] parseMove(String moveStr) {
-		String[] moveString = moveStr.split(",");
-		int[] move = new int[2];
-		move[0] = Integer.parseInt(moveString[0]);
-		move[1] = Integer.parseInt(moveString[1]);
-		return move;
+	/*
+	 *  plays random moves until the game ends, returns 1 if the player flagged
+	 *  	by player1 wins, -1 if the other player wins and 0 for a draw
+	 *  
+	 *  the game is played on the playout engine's scratch board, board is left untouched
+	 */
+	protected int playGame(QuartoBitBoard board, int startingPiece, Boolean player1) {
+		return playoutEngine.playGame(board, startingPiece, player1);
 	}
 
-	private int playGame(QuartoBoard board, int startingPiece, Boolean player1) {
+	// the original QuartoBoard playout, kept so the two boards can be compared
+	protected int playGame(QuartoBoard board, int startingPiece, Boolean player1) {
 
 		int piece = startingPiece;
 
@@ -253,6 +1372,11 @@ public class MonteCarlo {
 		}
 	}
 
+	// only the lines through the last move can have been completed by it
+	protected Boolean isWin(QuartoBitBoard board, int row, int col) {
+		return board.checkLastMove(row, col);
+	}
+
 	protected Boolean isWin(QuartoBoard board, int row, int col) {
 		if (board.checkRow(row) || board.checkColumn(col)
 				|| board.checkDiagonals()) {
@@ -262,71 +1386,71 @@ public class MonteCarlo {
 	}
 
 	protected int randomPieceSelection(QuartoBoard board) {
-		QuartoBoard copyBoard = new QuartoBoard(board);
-		return copyBoard.chooseRandomPieceNotPlayed(100);
+		return board.chooseRandomPieceNotPlayed(100);
+	}
+
+	protected int[] randomMove(int pieceID, QuartoBoard board) {
+		return board.chooseRandomPositionNotPlayed(100);
 	}
 
-	protected int semiRandomPieceSelection(QuartoBoard board) {
-		boolean skip = false;
+	public static ArrayList<Integer> getPossiblePieces(QuartoBitBoard board) {
+		ArrayList<Integer> pieces = new ArrayList<Integer>();
 		for (int i = 0; i < board.getNumberOfPieces(); i++) {
-			skip = false;
 			if (!board.isPieceOnBoard(i)) {
-				for (int row = 0; row < board.getNumberOfRows(); row++) {
-					for (int col = 0; col < board.getNumberOfColumns(); col++) {
-						if (!board.isSpaceTaken(row, col)) {
-							QuartoBoard copyBoard = new QuartoBoard(board);
-							copyBoard.insertPieceOnBoard(row, col, i);
-							if (copyBoard.checkRow(row)
-									|| copyBoard.checkColumn(col)
-									|| copyBoard.checkDiagonals()) {
-								skip = true;
-								break;
-							}
-						}
-					}
-					if (skip) {
-						break;
-					}
-
-				}
-				if (!skip) {
-					return i;
-				}
+				pieces.add(i);
 			}
 		}
-		QuartoBoard copyBoard = new QuartoBoard(board);
-		return copyBoard.chooseRandomPieceNotPlayed(100);
-	}
-
-	protected int[] randomMove(int pieceID, QuartoBoard board) {
-		int[] move = new int[2];
-		QuartoBoard copyBoard = new QuartoBoard(board);
-		move = copyBoard.chooseRandomPositionNotPlayed(100);
 
-		return move;
+		return pieces;
 	}
 
-	protected int[] semiRandomMove(int pieceID, QuartoBoard board) {
-		int[] move = new int[2];
+	public static ArrayList<int[]> getPossibleMoves(QuartoBitBoard board) {
+		ArrayList<int[]> movesList = new ArrayList<int[]>();
+
 		for (int row = 0; row < board.getNumberOfRows(); row++) {
 			for (int col = 0; col < board.getNumberOfColumns(); col++) {
 				if (!board.isSpaceTaken(row, col)) {
-					QuartoBoard copyBoard = new QuartoBoard(board);
-					copyBoard.insertPieceOnBoard(row, col, pieceID);
-					if (copyBoard.checkRow(row) || copyBoard.checkColumn(col)
-							|| copyBoard.checkDiagonals()) {
-						move[0] = row;
-						move[1] = col;
-						return move;
-					}
+					int[] moves = { row, col };
+					movesList.add(moves);
 				}
 			}
 		}
+		
+		return movesList;
+	}
 
-		// If no winning move is found in the above code, then return a random
-		// (unoccupied) square
-		QuartoBoard copyBoard = new QuartoBoard(board);
-		return copyBoard.chooseRandomPositionNotPlayed(100);
+	// pieces leading to equivalent positions are only listed once if attributeSymmetry is set, see Symmetry
+	public static ArrayList<Integer> getPossiblePieces(QuartoBitBoard board, boolean attributeSymmetry) {
+		if (!attributeSymmetry)
+			return getPossiblePieces(board);
+		ArrayList<Integer> pieces = new ArrayList<Integer>();
+		
+		int distinct = Symmetry.distinctPieces(board);
+		while (distinct != 0) {
+			pieces.add(Integer.numberOfTrailingZeros(distinct));
+			distinct &= distinct - 1;
+		}
+		
+		return pieces;
+	}
+
+	// moves leading to symmetric boards are only listed once, see Symmetry
+	public static ArrayList<int[]> getPossibleMoves(QuartoBitBoard board, Integer piece) {
+		return getPossibleMoves(board, piece, false);
+	}
+
+	public static ArrayList<int[]> getPossibleMoves(QuartoBitBoard board, Integer piece, boolean attributeSymmetry) {
+		ArrayList<int[]> movesList = new ArrayList<int[]>();
+		
+		int moves = Symmetry.distinctMoves(board, piece, attributeSymmetry);
+		while (moves != 0) {
+			int square = Integer.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+			int[] move = { QuartoBitBoard.getRow(square), QuartoBitBoard.getColumn(square) };
+			movesList.add(move);
+		}
+		
+		return movesList;
 	}
 
 	public static ArrayList<Integer> getPossiblePieces(QuartoBoard board) {
@@ -362,13 +1486,13 @@ public class MonteCarlo {
 		for (int row = 0; row < board.getNumberOfRows(); row++) {
 			for (int col = 0; col < board.getNumberOfColumns(); col++) {
 				if (!board.isSpaceTaken(row, col)) {
-					QuartoBoard copyBoard = new QuartoBoard(board);
-					copyBoard.insertPieceOnBoard(row, col, piece);
+					// try the move in place, only a board that is kept in the set is copied
+					board.insertPieceOnBoard(row, col, piece);
 					
 					// If the board generated by making that move exists in the board set, then don't add the move to the move list
 					boolean contains = false;
 					for (QuartoBoard boardSetBoard : boardSet) {
-						if (areEqualBoards(boardSetBoard, copyBoard)) {
+						if (areEqualBoards(boardSetBoard, board)) {
 							contains = true;
 							break;
 						}
@@ -377,9 +1501,10 @@ public class MonteCarlo {
 					if (!contains) {
 						int[] moves = {row, col};
 						movesList.add(moves);
-						ArrayList<QuartoBoard> symmetricBoards = findSymmetricBoards(copyBoard);
+						ArrayList<QuartoBoard> symmetricBoards = findSymmetricBoards(new QuartoBoard(board));
 						boardSet.addAll(symmetricBoards);
 					}
+					board.removePieceFromBoard(row, col);
 				}
 			}
 		}
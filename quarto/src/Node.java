@@ -1,31 +1,100 @@
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/*
+ * A node of the UCT tree.
+ *
+ * N and Q are updated with atomic field updaters so several threads can
+ * back up through the same node without locking. Expansion (taking the
+ * next action and adding its child) has to hold the node's monitor, and
+ * the children list is copy-on-write so it can be read while another
+ * thread adds to it.
+ *
+ * Actions are ints, the square of a placement for a SelectMoveNode and the
+ * piece id for a SelectPieceNode. actions holds all of them: the first
+ * children.size() lead to the children, in the same order, and the rest
+ * are still to be expanded. An action is moved into the first part before
+ * its child is published in children, and is not changed after that, so a
+ * thread that reads a child also reads its action.
+ *
+ * Most nodes are leaves that are never expanded, so the actions and the
+ * children list are only created by the first expansion and a leaf is
+ * little more than its statistics.
+ *
+ * virtualLoss counts the threads currently searching below the node.
+ * Each one counts as a visit that was lost, which steers other threads
+ * onto different paths until the real result is backed up.
+ *
+ * proven is the exact value of the node once the MCTS-Solver (see
+ * MonteCarlo.setMctsSolver) has proven it, from player1's point of view
+ * like the scores: 1 if player1 wins, -1 if the other player wins and 0 for
+ * a draw. Terminating nodes are proven when they are created.
+ *
+ * raveN and raveQ are the all-moves-as-first statistics of the node's
+ * actions (see MonteCarlo.setRave), indexed by square for a SelectMoveNode
+ * and by piece id for a SelectPieceNode. They belong to the node rather
+ * than to its children, so they are shared by every path reaching a
+ * transposition. The arrays are only created once the node is updated.
+ */
 class Node {
 
-	protected ArrayList<Node> children;
+	private static final AtomicIntegerFieldUpdater<Node> N_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Node.class, "n");
+	private static final AtomicIntegerFieldUpdater<Node> Q_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Node.class, "q");
+	private static final AtomicIntegerFieldUpdater<Node> DECISIVE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Node.class, "decisive");
+	private static final AtomicIntegerFieldUpdater<Node> VIRTUAL_LOSS_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Node.class, "virtualLoss");
 
-	private QuartoBoard board;
-	private String action;
-	protected ArrayList<String> remainingMoves;
+	// shared by all the nodes without children
+	private static final List<Node> NO_CHILDREN = Collections.emptyList();
+
+	private volatile List<Node> children = NO_CHILDREN;
 	
-	private int n;
-	private int q;
+	// a transposition can be reached with different actions from different parents, so they are kept by the parent
+	private volatile int[] actions;
+
+	private QuartoBitBoard board;
+	
+	private volatile int n;
+	private volatile int q;
+	// visits that ended in a win or a loss, for the variance of UCB1-Tuned
+	private volatile int decisive;
+	private volatile int virtualLoss;
+	
+	// heuristic weight of the node as a child, see MonteCarlo.heuristicPrior
+	private double prior = 1;
+	
+	// sum of the weights of all the node's actions, set before the first child is added
+	private double priorTotal = 1;
+	
+	public static final int UNPROVEN = Integer.MIN_VALUE;
+	
+	private volatile int proven = UNPROVEN;
+	
+	private volatile AtomicIntegerArray raveN;
+	private volatile AtomicIntegerArray raveQ;
+	
+	// Zobrist key of the node's state, see MonteCarlo.setTranspositions
+	private long key;
 
 	protected Node parent;
 	
 	protected boolean player;
 	
-	public Node(QuartoBoard board) {
-		this.children = new ArrayList<Node>();
-		this.remainingMoves = new ArrayList<String>();
+	public Node(QuartoBitBoard board) {
 		this.board = board;
 		this.player = true;
 	}
 	
-	public QuartoBoard getBoard() {
+	// null for nodes below the root when MonteCarlo keeps no boards in the tree
+	public QuartoBitBoard getBoard() {
 		return this.board;
 	}
 	
+	public void setBoard(QuartoBitBoard board) {
+		this.board = board;
+	}
+	
 	public int getN() {
 		return this.n;
 	}
@@ -42,26 +111,183 @@ class Node {
 		this.q = q;
 	}
 	
-	public String getAction() {
-		return action;
+	public int getDecisive() {
+		return this.decisive;
+	}
+	
+	public void setDecisive(int decisive) {
+		this.decisive = decisive;
+	}
+	
+	// records one visit with the given result, safe to call from several threads
+	public void update(int delta) {
+		N_UPDATER.incrementAndGet(this);
+		Q_UPDATER.addAndGet(this, delta);
+		if (delta != 0)
+			DECISIVE_UPDATER.incrementAndGet(this);
+	}
+	
+	public double getPrior() {
+		return this.prior;
+	}
+	
+	// only before the node is added to a parent
+	public void setPrior(double prior) {
+		this.prior = prior;
+	}
+	
+	public double getPriorTotal() {
+		return this.priorTotal;
+	}
+	
+	// only before the first child is added
+	public void setPriorTotal(double priorTotal) {
+		this.priorTotal = priorTotal;
+	}
+	
+	public int getVirtualLoss() {
+		return this.virtualLoss;
+	}
+	
+	public void addVirtualLoss() {
+		VIRTUAL_LOSS_UPDATER.incrementAndGet(this);
+	}
+	
+	public void removeVirtualLoss() {
+		VIRTUAL_LOSS_UPDATER.decrementAndGet(this);
+	}
+	
+	// records one all-moves-as-first visit with the given result for every action in the mask
+	public void updateRave(int actions, int delta) {
+		if (this.raveN == null) {
+			synchronized (this) {
+				if (this.raveN == null) {
+					this.raveQ = new AtomicIntegerArray(QuartoBitBoard.NUMBER_OF_PIECES);
+					this.raveN = new AtomicIntegerArray(QuartoBitBoard.NUMBER_OF_PIECES);
+				}
+			}
+		}
+		for (; actions != 0; actions &= actions - 1) {
+			int action = Integer.numberOfTrailingZeros(actions);
+			this.raveN.incrementAndGet(action);
+			this.raveQ.addAndGet(action, delta);
+		}
+	}
+	
+	public int getRaveN(int action) {
+		AtomicIntegerArray raveN = this.raveN;
+		return raveN == null ? 0 : raveN.get(action);
+	}
+	
+	public int getRaveQ(int action) {
+		AtomicIntegerArray raveQ = this.raveQ;
+		return raveQ == null ? 0 : raveQ.get(action);
+	}
+	
+	public boolean isProven() {
+		return this.proven != UNPROVEN;
+	}
+	
+	public int getProven() {
+		return this.proven;
+	}
+	
+	public void setProven(int proven) {
+		this.proven = proven;
 	}
 	
-	public void setAction(String action) {
-		this.action = action;
+	// null until the node is first expanded
+	public int[] getActions() {
+		return this.actions;
 	}
 	
-	public void addChild(Node child, String action) {
-		children.add(child);
-		child.action = action;
+	// only once, holding the node's monitor, with the actions in the order they are to be expanded
+	public void setActions(int[] actions) {
+		this.actions = actions;
+	}
+	
+	// only once the actions are set
+	public int getRemainingActions() {
+		return this.actions.length - children.size();
+	}
+	
+	// the action the next expansion takes
+	public int getNextAction() {
+		return this.actions[children.size()];
+	}
+	
+	// callers that can race with other threads must hold the node's monitor
+	public void addChild(Node child, int action) {
+		// the child is fully set up before it is published in children
 		child.setParentNode(this);
-		child.player = child.parent.player;
-		this.getRemainingMoves().remove(action);
+		child.player = this.getChildPlayer();
+		linkChild(child, action);
 	}
 	
-	public ArrayList<Node> getChildren() {
+	// adds a node that already has a parent (a transposition) without changing its parent
+	public void linkChild(Node child, int action) {
+		int[] actions = this.actions;
+		int expanded = children.size();
+		for (int i = expanded; actions != null && i < actions.length; i++) {
+			if (actions[i] == action) {
+				actions[i] = actions[expanded];
+				actions[expanded] = action;
+				if (expanded == 0) {
+					List<Node> first = new CopyOnWriteArrayList<Node>();
+					first.add(child);
+					this.children = first;
+				} else {
+					children.add(child);
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException("not a remaining action: " + formatAction(action));
+	}
+	
+	public long getKey() {
+		return this.key;
+	}
+	
+	public void setKey(long key) {
+		this.key = key;
+	}
+	
+	// the player acting in the children, the same player moves and then chooses a piece
+	protected boolean getChildPlayer() {
+		return this.player;
+	}
+	
+	public boolean isFullyExpanded() {
+		int[] actions = this.actions;
+		return actions != null && children.size() == actions.length;
+	}
+	
+	public List<Node> getChildren() {
 		return children;
 	}
 	
+	// the action leading to the child at index in getChildren
+	public int getChildAction(int index) {
+		return actions[index];
+	}
+	
+	// the index of the child action leads to, or -1 if it has not been expanded
+	public int findChild(int action) {
+		int[] actions = this.actions;
+		int expanded = children.size();
+		for (int i = 0; i < expanded; i++) {
+			if (actions[i] == action)
+				return i;
+		}
+		return -1;
+	}
+	
+	// the action in the form the server expects
+	public String formatAction(int action) {
+		return Integer.toString(action);
+	}
+	
 	public void setParentNode(Node newParentNode) {
 		this.parent = newParentNode;
 	}
@@ -69,73 +295,49 @@ class Node {
 	public Node getParentNode() {
 		return this.parent;
 	}
-	
-	public ArrayList<String> getRemainingMoves() {
-		return this.remainingMoves;
-	}
 }
 
 class SelectPieceNode extends Node {
-	public SelectPieceNode(QuartoBoard board) {
+	public SelectPieceNode(QuartoBitBoard board) {
 		super(board);
-		ArrayList<Integer> moves = MonteCarlo.getPossiblePieces(board);
-		if (moves.size() == 32) {
-			this.remainingMoves.add("00000");
-			return;
-		}
-		for (Integer move: moves) {
-			String action = String.format("%5s", Integer.toBinaryString(move)).replace(' ', '0');
-			this.remainingMoves.add(action);
-		}
-	}	
+	}
+	
+	public String formatAction(int piece) {
+		return QuartoAgent.formatPiece(piece);
+	}
 	
-	public void addChild(Node child, String action) {
-		super.addChild(child, action);
-		child.player = !child.parent.player;
+	// the piece is handed to the other player
+	protected boolean getChildPlayer() {
+		return !this.player;
 	}
 }
 
 class SelectMoveNode extends Node {
 	
-	public SelectMoveNode(QuartoBoard board) {
+	//the piece that has to be placed from this node
+	private int piece;
+	
+	public SelectMoveNode(QuartoBitBoard board, int piece) {
 		super(board);
-		ArrayList<int[]> movesList = MonteCarlo.getPossibleMoves(board); 
-		if (movesList.size() == 25) {
-			this.remainingMoves.add("2,2");
-			return;
-		}
-		for (int[] move : movesList) {
-			String action = move[0] + "," + move[1];
-			this.remainingMoves.add(action);
-		}
+		this.piece = piece;
 	}
 	
-	public SelectMoveNode(QuartoBoard board, Integer piece) {
-		super(board);
-		ArrayList<int[]> movesList = MonteCarlo.getPossibleMoves(board, piece);
-		if (movesList.size() == 25) {
-			this.remainingMoves.add("2,2");
-			return;
-		}
-		for (int[] move : movesList) {
-			String action = move[0] + "," + move[1];
-			this.remainingMoves.add(action);
-		}
+	public int getPiece() {
+		return this.piece;
 	}
 	
-	public void setAction(int piece) {
-		String action = String.format("%5s", Integer.toBinaryString(piece)).replace(' ', '0');
-		super.setAction(action);
+	public String formatAction(int square) {
+		return QuartoAgent.formatSquare(square);
 	}
 }
 
 class TerminatingNode extends Node {
 	private int value;
 	
-	public TerminatingNode(QuartoBoard board, int value) {
+	public TerminatingNode(QuartoBitBoard board, int value) {
 		super(board);
 		this.value = value;
-	
+		this.setProven(value);
 	}
 	
 	public void addChild(Node child) {
@@ -0,0 +1,237 @@
+/*
+ * Plays random games to the end for MonteCarlo.defaultPolicy.
+ *
+ * The engine copies the starting position into its own scratch board and
+ * picks squares and pieces uniformly from the empty-square and
+ * unplayed-piece masks, so a whole playout runs without allocating or
+ * retrying. An engine is not thread safe: every search thread owns one.
+ *
+ * With heavy set, the playouts use the threat queries of QuartoBitBoard:
+ * a winning square is always played, and a piece the other player could win
+ * with is only handed over when every unplayed piece is one. Handing over a
+ * safe piece means the next placement cannot win, so only the first
+ * placement looks for a winning square and every move after it costs one
+ * getSafePieces call more than a random playout.
+ *
+ * With a heavy rate between 0 and 1, each playout is heavy with that
+ * probability and random otherwise, mixing the two policies.
+ *
+ * The squares filled and the pieces placed by each player during the last
+ * playout are kept as masks, for the all-moves-as-first statistics of
+ * MonteCarlo.setRave.
+ *
+ * Scores follow MonteCarlo: 1 if the player flagged by player1 wins, -1 if
+ * the other player wins and 0 for a draw.
+ */
+public class PlayoutEngine {
+
+	private final QuartoBitBoard board = new QuartoBitBoard();
+	private final FastRandom random;
+
+	// the share of playouts that play decisive and anti-decisive moves instead of uniformly random ones
+	private double heavyRate;
+
+	// squares filled and pieces placed during the last playout, by the player flagged by player1 and by the other one
+	private int player1Squares;
+	private int player1Pieces;
+	private int player2Squares;
+	private int player2Pieces;
+
+	public PlayoutEngine() {
+		this(new FastRandom());
+	}
+
+	public PlayoutEngine(FastRandom random) {
+		this.random = random;
+	}
+
+	public void setHeavy(boolean heavy) {
+		this.heavyRate = heavy ? 1 : 0;
+	}
+
+	public boolean isHeavy() {
+		return this.heavyRate > 0;
+	}
+
+	public void setHeavyRate(double heavyRate) {
+		this.heavyRate = heavyRate;
+	}
+
+	public double getHeavyRate() {
+		return this.heavyRate;
+	}
+
+	// decides whether the next playout is heavy, without drawing a number when the rate is 0 or 1
+	private boolean nextHeavy() {
+		return this.heavyRate >= 1 || (this.heavyRate > 0 && this.random.nextDouble() < this.heavyRate);
+	}
+
+	/*
+	 * plays from a position where player1 has to place piece
+	 */
+	public int playGame(QuartoBitBoard start, int piece, boolean player1) {
+		this.start(start);
+		if (this.nextHeavy()) {
+			return this.playHeavyGame(piece, player1);
+		}
+		return this.playLightGame(piece, player1);
+	}
+
+	/*
+	 * the random playout from the scratch board, where player1 has to place piece
+	 */
+	private int playLightGame(int piece, boolean player1) {
+		while (true) {
+			int empty = this.board.getEmptySquares();
+			int square = QuartoBitBoard.nthSetBit(empty, this.random.nextInt(Integer.bitCount(empty)));
+
+			this.board.insertPieceOnSquare(square, piece);
+			this.record(player1, square, piece);
+
+			if (this.board.checkLastMove(square)) {
+				return player1 ? 1 : -1;
+			}
+
+			if (this.board.checkIfBoardIsFull()) {
+				return 0;
+			}
+
+			piece = this.randomPiece();
+
+			// Switch players
+			player1 = !player1;
+		}
+	}
+
+	/*
+	 * plays from a position where player1 has to hand a piece to the other player
+	 */
+	public int playGameFromPieceSelection(QuartoBitBoard start, boolean player1) {
+		this.start(start);
+		if (this.nextHeavy()) {
+			int safe = this.board.getSafePieces();
+			if (safe == 0) {
+				// every piece wins somewhere, the other player places it there
+				return player1 ? -1 : 1;
+			}
+			return this.playHeavyGame(this.randomPiece(safe), !player1);
+		}
+		return this.playLightGame(this.randomPiece(), !player1);
+	}
+
+	/*
+	 * the heavy playout from the scratch board, where player1 has to place piece
+	 */
+	private int playHeavyGame(int piece, boolean player1) {
+		int winning = this.board.getWinningSquares(piece);
+		if (winning != 0) {
+			this.record(player1, Integer.numberOfTrailingZeros(winning), piece);
+			return player1 ? 1 : -1;
+		}
+
+		while (true) {
+			// piece is safe here, so no square wins with it
+			int empty = this.board.getEmptySquares();
+			int square = QuartoBitBoard.nthSetBit(empty, this.random.nextInt(Integer.bitCount(empty)));
+
+			this.board.insertPieceOnSquare(square, piece);
+			this.record(player1, square, piece);
+
+			if (this.board.checkIfBoardIsFull()) {
+				return 0;
+			}
+
+			int safe = this.board.getSafePieces();
+			if (safe == 0) {
+				// every piece wins somewhere, the other player places it there
+				return player1 ? -1 : 1;
+			}
+			piece = this.randomPiece(safe);
+
+			// Switch players
+			player1 = !player1;
+		}
+	}
+
+	private void start(QuartoBitBoard start) {
+		this.board.copyFrom(start);
+		this.player1Squares = 0;
+		this.player1Pieces = 0;
+		this.player2Squares = 0;
+		this.player2Pieces = 0;
+	}
+
+	private void record(boolean player1, int square, int piece) {
+		if (player1) {
+			this.player1Squares |= 1 << square;
+			this.player1Pieces |= 1 << piece;
+		} else {
+			this.player2Squares |= 1 << square;
+			this.player2Pieces |= 1 << piece;
+		}
+	}
+
+	//the squares the player filled during the last playout
+	public int getSquaresPlacedBy(boolean player1) {
+		return player1 ? this.player1Squares : this.player2Squares;
+	}
+
+	//the pieces the player placed during the last playout
+	public int getPiecesPlacedBy(boolean player1) {
+		return player1 ? this.player1Pieces : this.player2Pieces;
+	}
+
+	private int randomPiece() {
+		return this.randomPiece(this.board.getUnplayedPieces());
+	}
+
+	private int randomPiece(int pieces) {
+		return QuartoBitBoard.nthSetBit(pieces, this.random.nextInt(Integer.bitCount(pieces)));
+	}
+
+	public FastRandom getRandom() {
+		return this.random;
+	}
+
+	/*
+	 * Compares playouts per second of the original QuartoBoard playout with this engine.
+	 * Optional argument: path to a .quarto file to play from (defaults to an empty board)
+	 */
+	public static void main(String[] args) {
+		String stateFileName = args.length > 0 ? args[0] : null;
+		QuartoBoard board = new QuartoBoard(QuartoBitBoard.NUMBER_OF_ROWS, QuartoBitBoard.NUMBER_OF_COLUMNS, QuartoBitBoard.NUMBER_OF_PIECES, stateFileName);
+		QuartoBitBoard bitBoard = new QuartoBitBoard(board);
+		MonteCarlo mc = new MonteCarlo(0, 0, false);
+		PlayoutEngine engine = new PlayoutEngine();
+		PlayoutEngine heavyEngine = new PlayoutEngine();
+		heavyEngine.setHeavy(true);
+		long duration = 2000;
+
+		for (int round = 0; round < 2; round++) {
+			int playouts = 0;
+			long endTime = System.currentTimeMillis() + duration;
+			while (System.currentTimeMillis() < endTime) {
+				mc.playGame(new QuartoBoard(board), board.chooseRandomPieceNotPlayed(100), true);
+				playouts++;
+			}
+			System.out.println("QuartoBoard playouts/sec:   " + (playouts * 1000 / duration));
+
+			playouts = 0;
+			endTime = System.currentTimeMillis() + duration;
+			while (System.currentTimeMillis() < endTime) {
+				engine.playGameFromPieceSelection(bitBoard, true);
+				playouts++;
+			}
+			System.out.println("PlayoutEngine playouts/sec: " + (playouts * 1000 / duration));
+
+			playouts = 0;
+			endTime = System.currentTimeMillis() + duration;
+			while (System.currentTimeMillis() < endTime) {
+				heavyEngine.playGameFromPieceSelection(bitBoard, true);
+				playouts++;
+			}
+			System.out.println("Heavy playouts/sec:         " + (playouts * 1000 / duration));
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Depth-first proof-number search (df-pn) for the late middle game.
+ *
+ * The search tries to prove that the player to move at the root (the
+ * attacker) can force a win. Turns are split like SelectMoveNode and
+ * SelectPieceNode: a place node (board, piece) chooses a square for the
+ * piece, a select node (board) chooses the piece handed to the other player.
+ * Nodes where the attacker acts are OR nodes, the others AND nodes.
+ *
+ * 	pn	proof number, how many leaves still have to be proven to prove a win
+ * 	dn	disproof number, the same for disproving it (a draw or a loss)
+ *
+ * 	OR node:	pn = min pn of the children, dn = sum of dn of the children
+ * 	AND node:	pn = sum of pn of the children, dn = min dn of the children
+ *
+ * MID searches below a node until its pn or dn reaches the thresholds it was
+ * called with, always going into the most proving child and giving it the
+ * thresholds from the second best child (Nagai's df-pn), so the tree is
+ * explored best first while only the current path is held in memory.
+ *
+ * Leaves are resolved without searching: a place node with a winning
+ * square is won by its mover, a place node for the last square is a draw
+ * and handing over a piece that wins on some square loses for the player
+ * handing it over.
+ *
+ * (pn, dn) of the searched nodes are kept in a bounded transposition table
+ * keyed by the Zobrist hash of the position (see Zobrist), with
+ * Zobrist.OTHER_PLAYER xored in when the defender is to move, so entries
+ * stay valid from one search to the next. Every key maps to two slots and
+ * the entry that took less work to compute is replaced. The children of the
+ * nodes on the current path are also kept per ply, so a result pushed out
+ * of the table is not lost for its parent.
+ */
+public class ProofNumberSearch {
+
+	public static final int WIN = 1;
+	public static final int NO_WIN = 0;
+	public static final int UNKNOWN = -2;
+
+	private static final int INFINITY = 1 << 28;
+
+	// how often (in nodes) the deadline is checked
+	private static final int CLOCK_MASK = (1 << 10) - 1;
+
+	private static final int MAX_PLY = 2 * QuartoBitBoard.NUMBER_OF_SQUARES + 2;
+
+	// one scratch board per square placed, like EndgameSolver
+	private final QuartoBitBoard[] boards = new QuartoBitBoard[QuartoBitBoard.NUMBER_OF_SQUARES + 1];
+
+	// children of the node searched at each ply: the square or piece, and their current proof and disproof numbers
+	private final int[][] childActions = new int[MAX_PLY][QuartoBitBoard.NUMBER_OF_PIECES];
+	private final int[][] childPn = new int[MAX_PLY][QuartoBitBoard.NUMBER_OF_PIECES];
+	private final int[][] childDn = new int[MAX_PLY][QuartoBitBoard.NUMBER_OF_PIECES];
+	private final int[] childCount = new int[MAX_PLY];
+
+	private final long[] keys;
+	private final int[] proofs;
+	private final int[] disproofs;
+	private final long[] work;
+	private final int mask;
+
+	private volatile boolean stopped;
+	private long deadline;
+	private boolean aborted;
+	private long nodes;
+
+	// (pn, dn) of the node the last MID call returned from
+	private int resultPn;
+	private int resultDn;
+
+	private int bestAction;
+
+	public ProofNumberSearch() {
+		this(20);
+	}
+
+	public ProofNumberSearch(int log2Size) {
+		for (int i = 0; i < this.boards.length; i++) {
+			this.boards[i] = new QuartoBitBoard();
+		}
+		this.keys = new long[1 << log2Size];
+		this.proofs = new int[1 << log2Size];
+		this.disproofs = new int[1 << log2Size];
+		this.work = new long[1 << log2Size];
+		this.mask = (1 << log2Size) - 1;
+	}
+
+	/*
+	 * tries to prove that the player who has to place piece wins,
+	 * getBestSquare is the winning square when WIN is returned
+	 */
+	public int solvePlacement(QuartoBitBoard board, int piece, long deadline) {
+		this.start(board, deadline);
+		this.mid(0, 0, piece, true, INFINITY, INFINITY);
+		return this.finish();
+	}
+
+	/*
+	 * tries to prove that the player who has to hand over a piece wins,
+	 * getBestPiece is the piece to give when WIN is returned
+	 */
+	public int solveSelection(QuartoBitBoard board, long deadline) {
+		this.start(board, deadline);
+		this.mid(0, 0, -1, true, INFINITY, INFINITY);
+		return this.finish();
+	}
+
+	// makes a running search return UNKNOWN, can be called from another thread
+	public void stop() {
+		this.stopped = true;
+	}
+
+	private void start(QuartoBitBoard board, long deadline) {
+		this.boards[0].copyFrom(board);
+		this.deadline = deadline;
+		this.stopped = false;
+		this.aborted = false;
+		this.nodes = 0;
+		this.bestAction = -1;
+	}
+
+	private int finish() {
+		if (this.aborted) {
+			return UNKNOWN;
+		}
+		if (this.resultPn == 0) {
+			return WIN;
+		}
+		return this.resultDn == 0 ? NO_WIN : UNKNOWN;
+	}
+
+	/*
+	 * searches the place node (piece >= 0) or select node (piece == -1) on
+	 * boards[depth] until pn >= thresholdPn or dn >= thresholdDn, leaves
+	 * its numbers in resultPn and resultDn
+	 */
+	private void mid(int ply, int depth, int piece, boolean attacker, int thresholdPn, int thresholdDn) {
+		if ((++this.nodes & CLOCK_MASK) == 0 && (this.stopped || System.currentTimeMillis() > this.deadline)) {
+			this.aborted = true;
+		}
+		if (this.aborted) {
+			return;
+		}
+
+		QuartoBitBoard board = this.boards[depth];
+		long key = this.key(board, piece, attacker);
+		long nodesBefore = this.nodes;
+
+		if (!this.generate(ply, board, piece, attacker)) {
+			// decided without searching, generate left the result
+			this.store(key, this.resultPn, this.resultDn, 1);
+			return;
+		}
+
+		int[] actions = this.childActions[ply];
+		int[] pns = this.childPn[ply];
+		int[] dns = this.childDn[ply];
+		int count = this.childCount[ply];
+
+		while (true) {
+			// OR node: the child with the smallest pn is the most proving, AND node: the smallest dn
+			int pn, dn, best = 0, second = INFINITY;
+			if (attacker) {
+				pn = INFINITY;
+				dn = 0;
+				for (int i = 0; i < count; i++) {
+					dn = Math.min(INFINITY, dn + dns[i]);
+					if (pns[i] < pn) {
+						second = pn;
+						pn = pns[i];
+						best = i;
+					} else if (pns[i] < second) {
+						second = pns[i];
+					}
+				}
+			} else {
+				pn = 0;
+				dn = INFINITY;
+				for (int i = 0; i < count; i++) {
+					pn = Math.min(INFINITY, pn + pns[i]);
+					if (dns[i] < dn) {
+						second = dn;
+						dn = dns[i];
+						best = i;
+					} else if (dns[i] < second) {
+						second = dns[i];
+					}
+				}
+			}
+
+			if (pn >= thresholdPn || dn >= thresholdDn || this.aborted) {
+				if (ply == 0) {
+					this.bestAction = actions[best];
+				}
+				this.resultPn = pn;
+				this.resultDn = dn;
+				if (!this.aborted) {
+					this.store(key, pn, dn, this.nodes - nodesBefore);
+				}
+				return;
+			}
+
+			int childThresholdPn, childThresholdDn;
+			if (attacker) {
+				childThresholdPn = Math.min(thresholdPn, second + 1);
+				childThresholdDn = thresholdDn - dn + dns[best];
+			} else {
+				childThresholdPn = thresholdPn - pn + pns[best];
+				childThresholdDn = Math.min(thresholdDn, second + 1);
+			}
+
+			if (piece == -1) {
+				// the other player places the piece on the same board
+				this.mid(ply + 1, depth, actions[best], !attacker, childThresholdPn, childThresholdDn);
+			} else {
+				QuartoBitBoard next = this.boards[depth + 1];
+				next.copyFrom(board);
+				next.insertPieceOnSquare(actions[best], piece);
+				this.mid(ply + 1, depth + 1, -1, attacker, childThresholdPn, childThresholdDn);
+			}
+			pns[best] = this.resultPn;
+			dns[best] = this.resultDn;
+		}
+	}
+
+	/*
+	 * fills the children of the node at ply with their numbers from the table
+	 * (1, 1 for new ones). Returns false if the node is decided without
+	 * searching, with its numbers in resultPn and resultDn
+	 */
+	private boolean generate(int ply, QuartoBitBoard board, int piece, boolean attacker) {
+		int empty = board.getEmptySquares();
+		int count = 0;
+
+		if (piece != -1) {
+			int winning = board.getWinningSquares(piece);
+			if (winning != 0) {
+				if (ply == 0) {
+					this.bestAction = Integer.numberOfTrailingZeros(winning);
+				}
+				this.setResult(attacker);
+				return false;
+			}
+			if (Integer.bitCount(empty) == 1) {
+				// the last square is filled without a win
+				this.setResult(false);
+				return false;
+			}
+
+			for (int squares = empty; squares != 0; squares &= squares - 1) {
+				int square = Integer.numberOfTrailingZeros(squares);
+				long childKey = board.getHash() ^ Zobrist.SQUARES[square][piece] ^ (attacker ? 0 : Zobrist.OTHER_PLAYER);
+				this.addChild(ply, count++, square, childKey);
+			}
+		} else {
+			// the other player wins at once with an unsafe piece, so those are never worth handing over
+			for (int pieces = board.getSafePieces(); pieces != 0; pieces &= pieces - 1) {
+				int next = Integer.numberOfTrailingZeros(pieces);
+				long childKey = board.getHash() ^ Zobrist.PIECE_TO_PLACE[next] ^ (attacker ? Zobrist.OTHER_PLAYER : 0);
+				this.addChild(ply, count++, next, childKey);
+			}
+			if (count == 0) {
+				// every piece loses
+				this.setResult(!attacker);
+				return false;
+			}
+		}
+
+		this.childCount[ply] = count;
+		return true;
+	}
+
+	private void addChild(int ply, int index, int action, long childKey) {
+		this.childActions[ply][index] = action;
+		int slot = this.find(childKey);
+		if (slot == -1) {
+			this.childPn[ply][index] = 1;
+			this.childDn[ply][index] = 1;
+		} else {
+			this.childPn[ply][index] = this.proofs[slot];
+			this.childDn[ply][index] = this.disproofs[slot];
+		}
+	}
+
+	// the node is proven (the attacker wins) or disproven
+	private void setResult(boolean proven) {
+		this.resultPn = proven ? 0 : INFINITY;
+		this.resultDn = proven ? INFINITY : 0;
+	}
+
+	private long key(QuartoBitBoard board, int piece, boolean attacker) {
+		long key = board.getHash();
+		if (piece != -1) {
+			key ^= Zobrist.PIECE_TO_PLACE[piece];
+		}
+		return attacker ? key : key ^ Zobrist.OTHER_PLAYER;
+	}
+
+	// returns the slot holding key, or -1
+	private int find(long key) {
+		int index = (int) key & this.mask;
+		if (this.keys[index] == key && this.work[index] != 0) {
+			return index;
+		}
+		index ^= 1;
+		if (this.keys[index] == key && this.work[index] != 0) {
+			return index;
+		}
+		return -1;
+	}
+
+	private void store(long key, int pn, int dn, long effort) {
+		int index = this.find(key);
+		if (index == -1) {
+			// replace the entry that was cheaper to compute
+			index = (int) key & this.mask;
+			if (this.work[index ^ 1] < this.work[index]) {
+				index ^= 1;
+			}
+		}
+		this.keys[index] = key;
+		this.proofs[index] = pn;
+		this.disproofs[index] = dn;
+		this.work[index] = Math.max(1, effort);
+	}
+
+	public int getBestSquare() {
+		return this.bestAction;
+	}
+
+	public int getBestPiece() {
+		return this.bestAction;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	public static String describe(int value) {
+		switch (value) {
+		case WIN:
+			return "win";
+		case NO_WIN:
+			return "no win";
+		default:
+			return "unknown";
+		}
+	}
+
+}
@@ -58,6 +58,29 @@ public class QuartoAgent {
 
 	}
 
+	//piece ids in the form the server expects, built once
+	private static final String[] PIECE_STRINGS = new String[NUMBER_OF_PIECES];
+	static {
+		for (int i = 0; i < NUMBER_OF_PIECES; i++) {
+			PIECE_STRINGS[i] = String.format("%5s", Integer.toBinaryString(i)).replace(' ', '0');
+		}
+	}
+
+	//formats a piece id for the server, e.g. 10011
+	public static String formatPiece(int pieceID) {
+		return PIECE_STRINGS[pieceID];
+	}
+
+	//formats a move for the server, e.g. 1,1
+	public static String formatMove(int row, int column) {
+		return row + "," + column;
+	}
+
+	//formats a square of QuartoBitBoard as a move
+	public static String formatSquare(int square) {
+		return formatMove(QuartoBitBoard.getRow(square), QuartoBitBoard.getColumn(square));
+	}
+
 
 	//MAIN METHOD
 	public static void main(String[] args) {
@@ -100,6 +123,9 @@ public class QuartoAgent {
 		//player 2 gets first move
 		if (playerNumber == 2) {
 			choosePieceTurn();
+		} else {
+			//player 2 is choosing the first piece
+			startPondering(null);
 		}
 
 		while(gameOn) {
@@ -166,8 +192,12 @@ public class QuartoAgent {
 		}
 
 		int pieceID = Integer.parseInt(splittedResponse[1], 2);
+		pieceSelected(pieceID);
 
+		//the other player places the piece
+		startPondering(pieceID);
 		MessageFromServer = this.gameClient.readFromServer(1000000);
+		stopPondering();
 		String[] splittedMoveResponse = MessageFromServer.split("\\s+");
 
 		isExpectedMessage(splittedMoveResponse, MOVE_MESSAGE_HEADER, true);
@@ -178,6 +208,12 @@ public class QuartoAgent {
 		move[1] = Integer.parseInt(moveString[1]);
 
 		this.quartoBoard.insertPieceOnBoard(move[0], move[1], pieceID);
+		movePlayed(move[0], move[1], pieceID);
+
+		//unless that ended the game, the other player chooses the next piece
+		if (!this.quartoBoard.checkIfBoardIsFull() && !new QuartoBitBoard(this.quartoBoard).checkLastMove(move[0], move[1])) {
+			startPondering(null);
+		}
 
 	}
 
@@ -185,11 +221,13 @@ public class QuartoAgent {
 		//get message
 		String MessageFromServer;
 		MessageFromServer = this.gameClient.readFromServer(1000000);
+		stopPondering();
 		String[] splittedMessage = MessageFromServer.split("\\s+");
 
 		//close program if message is not the expected message
 		isExpectedMessage(splittedMessage, SELECT_MOVE_HEADER, true);
 		int pieceID = Integer.parseInt(splittedMessage[1], 2);
+		pieceSelected(pieceID);
 
 		//determine piece
 		String moveMessage = moveSelectionAlgorithm(pieceID);
@@ -208,9 +246,46 @@ public class QuartoAgent {
 		move[1] = Integer.parseInt(moveString[1]);
 
 		this.quartoBoard.insertPieceOnBoard(move[0], move[1], pieceID);
+		movePlayed(move[0], move[1], pieceID);
 
 	}
 
+	/*
+	 * Called every time a piece is handed over, by either player.
+	 * Agents that keep state between turns can override it.
+	 */
+	protected void pieceSelected(int pieceID) {
+	}
+
+	/*
+	 * Called every time a piece is placed on the board, by either player.
+	 * Agents that keep state between turns can override it.
+	 */
+	protected void movePlayed(int row, int column, int pieceID) {
+	}
+
+
+	/*
+	 * Called when the agent starts waiting for the other player, who has to
+	 * place pieceID or, if it is null, choose a piece. Agents that think on
+	 * the other player's time can override it, and stopPondering, which is
+	 * called as soon as the server answers.
+	 */
+	protected void startPondering(Integer pieceID) {
+	}
+
+	protected void stopPondering() {
+	}
+
+	/*
+	 * Milliseconds of timeLimitForResponse the agent keeps for the network
+	 * rather than for thinking. Agents that search until a deadline
+	 * override it, see SearchParameters.timeMargin.
+	 */
+	protected int getTimeMargin() {
+		return 0;
+	}
+
 
 	/*
 	 ********************* UTILITY FUNCTIONS ************************
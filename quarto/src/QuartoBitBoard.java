@@ -0,0 +1,511 @@
+/*
+ * Compact version of QuartoBoard for the search code.
+ *
+ * The whole position is held in a few ints instead of QuartoPiece objects:
+ * 		occupied	one bit per square that holds a piece
+ * 		placed		one bit per piece id that is on the board
+ * 		tall ... round	one mask per characteristic, holding the squares whose
+ * 					piece has that characteristic
+ *
+ * Square (row, column) is bit (row * NUMBER_OF_COLUMNS + column). The
+ * characteristics follow the order used by QuartoPiece, so characteristic i
+ * is bit (4 - i) of the piece id and the piece on a square can be rebuilt
+ * from the five masks.
+ *
+ * For every line of QuartoLines the board also keeps the running AND and OR
+ * of the piece ids placed on it, packed 5 bits per line into two longs. A
+ * full line wins when its AND is not 0 (all pieces share a 1 bit) or its OR
+ * is not 11111 (all pieces share a 0 bit), so checking the last move only
+ * looks at the 2-4 lines through its square.
+ *
+ * A line with a single empty square is a threat: the pieces sharing a 1 bit
+ * with its AND or a 0 bit with its OR complete it. COMPLETING_PIECES holds
+ * that set of piece ids for every (AND, missing OR) pair, so the winning
+ * squares of a piece and the pieces that are safe to hand over are a few
+ * mask operations over the threat lines instead of a trial placement per
+ * (piece, square) pair.
+ *
+ * The board also keeps its Zobrist hash (see Zobrist) up to date.
+ *
+ * Copying a board is a handful of assignments, so the search can copy
+ * freely where QuartoBoard would rebuild all 32 pieces.
+ */
+public class QuartoBitBoard {
+
+	public static final int NUMBER_OF_ROWS = 5;
+	public static final int NUMBER_OF_COLUMNS = 5;
+	public static final int NUMBER_OF_SQUARES = NUMBER_OF_ROWS * NUMBER_OF_COLUMNS;
+	public static final int NUMBER_OF_PIECES = 32;
+	public static final int NUMBER_OF_CHARACTERISTICS = 5;
+
+	public static final int ALL_SQUARES = (1 << NUMBER_OF_SQUARES) - 1;
+	public static final int ALL_PIECES = 0xFFFFFFFF;
+
+	private static final int PIECE_MASK = NUMBER_OF_PIECES - 1;
+	private static final long ALL_LINES = (1L << (NUMBER_OF_CHARACTERISTICS * QuartoLines.NUMBER_OF_LINES)) - 1;
+
+	//the piece ids that complete a line with the given AND (shared 1 bits) and missing OR (shared 0 bits), indexed by and << 5 | missing
+	private static final int[] COMPLETING_PIECES = new int[NUMBER_OF_PIECES * NUMBER_OF_PIECES];
+
+	static {
+		for (int and = 0; and < NUMBER_OF_PIECES; and++) {
+			for (int missing = 0; missing < NUMBER_OF_PIECES; missing++) {
+				for (int pieceID = 0; pieceID < NUMBER_OF_PIECES; pieceID++) {
+					if ((pieceID & and) != 0 || (~pieceID & missing) != 0) {
+						COMPLETING_PIECES[and << NUMBER_OF_CHARACTERISTICS | missing] |= 1 << pieceID;
+					}
+				}
+			}
+		}
+	}
+
+	private int occupied;
+	private int placed;
+
+	private int tall;
+	private int solid;
+	private int white;
+	private int wood;
+	private int round;
+
+	//running AND/OR of the piece ids on each line, 5 bits per line
+	private long lineAnd = ALL_LINES;
+	private long lineOr;
+
+	//Zobrist hash of the pieces on the board
+	private long hash;
+
+	//creates an empty board
+	public QuartoBitBoard() {
+	}
+
+	//copy constructor
+	public QuartoBitBoard(QuartoBitBoard board) {
+		this.copyFrom(board);
+	}
+
+	//builds the compact form of a QuartoBoard
+	public QuartoBitBoard(QuartoBoard board) {
+		if (board.getNumberOfRows() != NUMBER_OF_ROWS || board.getNumberOfColumns() != NUMBER_OF_COLUMNS
+				|| board.getNumberOfPieces() != NUMBER_OF_PIECES) {
+			throw new IllegalArgumentException("QuartoBitBoard only supports a 5x5 board with 32 pieces");
+		}
+
+		for (int row = 0; row < NUMBER_OF_ROWS; row++) {
+			for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+				QuartoPiece piece = board.getPieceOnPosition(row, column);
+				if (piece != null) {
+					this.insertPieceOnSquare(toSquare(row, column), piece.getPieceID());
+				}
+			}
+		}
+	}
+
+	//overwrites this board with the contents of another one without allocating
+	public void copyFrom(QuartoBitBoard board) {
+		this.occupied = board.occupied;
+		this.placed = board.placed;
+		this.tall = board.tall;
+		this.solid = board.solid;
+		this.white = board.white;
+		this.wood = board.wood;
+		this.round = board.round;
+		this.lineAnd = board.lineAnd;
+		this.lineOr = board.lineOr;
+		this.hash = board.hash;
+	}
+
+	//builds a QuartoBoard holding the same position
+	public QuartoBoard toQuartoBoard() {
+		QuartoBoard board = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, null);
+		for (int square = 0; square < NUMBER_OF_SQUARES; square++) {
+			if (this.isSquareTaken(square)) {
+				board.insertPieceOnBoard(getRow(square), getColumn(square), this.getPieceIdOnSquare(square));
+			}
+		}
+		return board;
+	}
+
+	public static int toSquare(int row, int column) {
+		return row * NUMBER_OF_COLUMNS + column;
+	}
+
+	public static int getRow(int square) {
+		return square / NUMBER_OF_COLUMNS;
+	}
+
+	public static int getColumn(int square) {
+		return square % NUMBER_OF_COLUMNS;
+	}
+
+	//inserts a piece on the board, with the same error checking as QuartoBoard
+	public boolean insertPieceOnBoard(int row, int column, int pieceID) {
+		if (row < 0 || row >= NUMBER_OF_ROWS || column < 0 || column >= NUMBER_OF_COLUMNS
+				|| pieceID < 0 || pieceID >= NUMBER_OF_PIECES || this.isPieceOnBoard(pieceID)
+				|| this.isSpaceTaken(row, column)) {
+			return false;
+		}
+
+		this.insertPieceOnSquare(toSquare(row, column), pieceID);
+		return true;
+	}
+
+	//inserts a piece without any checking, the caller must know the square is empty and the piece unplayed
+	public void insertPieceOnSquare(int square, int pieceID) {
+		int bit = 1 << square;
+		this.occupied |= bit;
+		this.placed |= 1 << pieceID;
+		if ((pieceID & 16) != 0) this.tall |= bit;
+		if ((pieceID & 8) != 0) this.solid |= bit;
+		if ((pieceID & 4) != 0) this.white |= bit;
+		if ((pieceID & 2) != 0) this.wood |= bit;
+		if ((pieceID & 1) != 0) this.round |= bit;
+
+		this.hash ^= Zobrist.SQUARES[square][pieceID];
+
+		long missing = ~pieceID & PIECE_MASK;
+		for (int line : QuartoLines.SQUARE_LINES[square]) {
+			int shift = line * NUMBER_OF_CHARACTERISTICS;
+			this.lineAnd &= ~(missing << shift);
+			this.lineOr |= (long) pieceID << shift;
+		}
+	}
+
+	//takes the piece off the square again, the caller must know the square is taken
+	public void removePieceFromSquare(int square) {
+		int pieceID = this.getPieceIdOnSquare(square);
+		int bit = 1 << square;
+		this.occupied &= ~bit;
+		this.placed &= ~(1 << pieceID);
+		this.tall &= ~bit;
+		this.solid &= ~bit;
+		this.white &= ~bit;
+		this.wood &= ~bit;
+		this.round &= ~bit;
+
+		this.hash ^= Zobrist.SQUARES[square][pieceID];
+
+		//an AND/OR cannot be undone, so the lines through the square are rebuilt from the masks
+		for (int line : QuartoLines.SQUARE_LINES[square]) {
+			int squares = this.occupied & QuartoLines.LINE_MASKS[line];
+			long and = PIECE_MASK;
+			long or = 0;
+			if (squares != 0) {
+				and = this.sharedCharacteristics(squares);
+				or = this.anyCharacteristics(squares);
+			}
+			int shift = line * NUMBER_OF_CHARACTERISTICS;
+			this.lineAnd = (this.lineAnd & ~((long) PIECE_MASK << shift)) | (and << shift);
+			this.lineOr = (this.lineOr & ~((long) PIECE_MASK << shift)) | (or << shift);
+		}
+	}
+
+	//the characteristics shared by all pieces on squares, as a piece id
+	private int sharedCharacteristics(int squares) {
+		int and = 0;
+		if ((this.tall & squares) == squares) and |= 16;
+		if ((this.solid & squares) == squares) and |= 8;
+		if ((this.white & squares) == squares) and |= 4;
+		if ((this.wood & squares) == squares) and |= 2;
+		if ((this.round & squares) == squares) and |= 1;
+		return and;
+	}
+
+	//the characteristics of any piece on squares, as a piece id
+	private int anyCharacteristics(int squares) {
+		int or = 0;
+		if ((this.tall & squares) != 0) or |= 16;
+		if ((this.solid & squares) != 0) or |= 8;
+		if ((this.white & squares) != 0) or |= 4;
+		if ((this.wood & squares) != 0) or |= 2;
+		if ((this.round & squares) != 0) or |= 1;
+		return or;
+	}
+
+	//checks if a piece is on the board
+	public boolean isPieceOnBoard(int pieceID) {
+		if (pieceID < 0 || pieceID >= NUMBER_OF_PIECES) {
+			return false;
+		}
+		return (this.placed & (1 << pieceID)) != 0;
+	}
+
+	//checks if a space is occupied
+	public boolean isSpaceTaken(int row, int column) {
+		if (row < 0 || row >= NUMBER_OF_ROWS || column < 0 || column >= NUMBER_OF_COLUMNS) {
+			return false;
+		}
+		return this.isSquareTaken(toSquare(row, column));
+	}
+
+	public boolean isSquareTaken(int square) {
+		return (this.occupied & (1 << square)) != 0;
+	}
+
+	//returns the id of the piece occupying [row,column], or -1 if the space is empty
+	public int getPieceIdOnPosition(int row, int column) {
+		if (row < 0 || row >= NUMBER_OF_ROWS || column < 0 || column >= NUMBER_OF_COLUMNS) {
+			return -1;
+		}
+		return this.getPieceIdOnSquare(toSquare(row, column));
+	}
+
+	public int getPieceIdOnSquare(int square) {
+		if (!this.isSquareTaken(square)) {
+			return -1;
+		}
+		return ((this.tall >>> square) & 1) << 4
+				| ((this.solid >>> square) & 1) << 3
+				| ((this.white >>> square) & 1) << 2
+				| ((this.wood >>> square) & 1) << 1
+				| ((this.round >>> square) & 1);
+	}
+
+	//simple Getters
+	public int getNumberOfRows() {
+		return NUMBER_OF_ROWS;
+	}
+
+	public int getNumberOfColumns() {
+		return NUMBER_OF_COLUMNS;
+	}
+
+	public int getNumberOfPieces() {
+		return NUMBER_OF_PIECES;
+	}
+
+	public int getOccupiedSquares() {
+		return this.occupied;
+	}
+
+	public int getEmptySquares() {
+		return ~this.occupied & ALL_SQUARES;
+	}
+
+	public long getHash() {
+		return this.hash;
+	}
+
+	public int getPlacedPieces() {
+		return this.placed;
+	}
+
+	public int getUnplayedPieces() {
+		return ~this.placed;
+	}
+
+	//returns the squares whose piece has the characteristic, using the QuartoPiece order (0 is tall ... 4 is round)
+	public int getCharacteristicMask(int characteristic) {
+		switch (characteristic) {
+		case 0:
+			return this.tall;
+		case 1:
+			return this.solid;
+		case 2:
+			return this.white;
+		case 3:
+			return this.wood;
+		case 4:
+			return this.round;
+		default:
+			throw new IllegalArgumentException("No characteristic " + characteristic);
+		}
+	}
+
+	//checks to see if there is a winning row
+	public boolean checkRow(int row) {
+		return this.isWinningLine(QuartoLines.rowLine(row));
+	}
+
+	//checks to see if there is a winning column
+	public boolean checkColumn(int column) {
+		return this.isWinningLine(QuartoLines.columnLine(column));
+	}
+
+	//checks the Diagonals
+	public boolean checkDiagonals() {
+		return this.isWinningLine(QuartoLines.MAIN_DIAGONAL_LINE) || this.isWinningLine(QuartoLines.ANTI_DIAGONAL_LINE);
+	}
+
+	//checks if the piece just placed on [row,column] completed a winning line
+	public boolean checkLastMove(int row, int column) {
+		return this.getWinningLine(toSquare(row, column)) != -1;
+	}
+
+	public boolean checkLastMove(int square) {
+		return this.getWinningLine(square) != -1;
+	}
+
+	//returns a winning line (see QuartoLines) going through the square, or -1 if there is none
+	public int getWinningLine(int square) {
+		for (int line : QuartoLines.SQUARE_LINES[square]) {
+			if (this.isWinningLine(line)) {
+				return line;
+			}
+		}
+		return -1;
+	}
+
+	//checks if placing piece on the empty square would complete a winning line, without changing the board
+	public boolean isWinningMove(int square, int pieceID) {
+		int occupiedAfter = this.occupied | (1 << square);
+		for (int line : QuartoLines.SQUARE_LINES[square]) {
+			int mask = QuartoLines.LINE_MASKS[line];
+			if ((occupiedAfter & mask) != mask) {
+				continue;
+			}
+			int shift = line * NUMBER_OF_CHARACTERISTICS;
+			if (((this.lineAnd >>> shift) & pieceID) != 0 || (((this.lineOr >>> shift) | pieceID) & PIECE_MASK) != PIECE_MASK) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//the pieces that complete the line when placed on its last empty square, the caller must know there is exactly one
+	private int getCompletingPieces(int line) {
+		int shift = line * NUMBER_OF_CHARACTERISTICS;
+		int and = (int) (this.lineAnd >>> shift) & PIECE_MASK;
+		int missing = ~(int) (this.lineOr >>> shift) & PIECE_MASK;
+		return COMPLETING_PIECES[and << NUMBER_OF_CHARACTERISTICS | missing];
+	}
+
+	//checks if the line has exactly one empty square
+	private boolean isThreatLine(int line) {
+		int empty = QuartoLines.LINE_MASKS[line] & ~this.occupied;
+		return empty != 0 && (empty & (empty - 1)) == 0;
+	}
+
+	//returns the pieces that would win on the empty square, as a mask of piece ids (played pieces included)
+	public int getWinningPieces(int square) {
+		int pieces = 0;
+		for (int line : QuartoLines.SQUARE_LINES[square]) {
+			if (this.isThreatLine(line)) {
+				pieces |= this.getCompletingPieces(line);
+			}
+		}
+		return pieces;
+	}
+
+	//returns the empty squares piece would win on, as a mask of squares
+	public int getWinningSquares(int pieceID) {
+		int squares = 0;
+		for (int line = 0; line < QuartoLines.NUMBER_OF_LINES; line++) {
+			if (this.isThreatLine(line) && (this.getCompletingPieces(line) & (1 << pieceID)) != 0) {
+				squares |= QuartoLines.LINE_MASKS[line] & ~this.occupied;
+			}
+		}
+		return squares;
+	}
+
+	//returns the unplayed pieces that win on some empty square, handing one over loses at once
+	public int getUnsafePieces() {
+		int pieces = 0;
+		for (int line = 0; line < QuartoLines.NUMBER_OF_LINES; line++) {
+			if (this.isThreatLine(line)) {
+				pieces |= this.getCompletingPieces(line);
+			}
+		}
+		return pieces & this.getUnplayedPieces();
+	}
+
+	//returns the unplayed pieces that do not win on any empty square
+	public int getSafePieces() {
+		return this.getUnplayedPieces() & ~this.getUnsafePieces();
+	}
+
+	//returns the lines (see QuartoLines) with one empty square that some unplayed piece would complete, as a mask of line numbers
+	public int getThreatLines() {
+		int unplayed = this.getUnplayedPieces();
+		int lines = 0;
+		for (int line = 0; line < QuartoLines.NUMBER_OF_LINES; line++) {
+			if (this.isThreatLine(line) && (this.getCompletingPieces(line) & unplayed) != 0) {
+				lines |= 1 << line;
+			}
+		}
+		return lines;
+	}
+
+	//a line wins if it is full and all of its pieces agree on one of the characteristics
+	public boolean isWinningLine(int line) {
+		int mask = QuartoLines.LINE_MASKS[line];
+		if ((this.occupied & mask) != mask) {
+			return false;
+		}
+		int shift = line * NUMBER_OF_CHARACTERISTICS;
+		return ((this.lineAnd >>> shift) & PIECE_MASK) != 0 || ((this.lineOr >>> shift) & PIECE_MASK) != PIECE_MASK;
+	}
+
+	//checks if the board is full
+	public boolean checkIfBoardIsFull() {
+		return this.occupied == ALL_SQUARES;
+	}
+
+	//picks an unplayed piece uniformly at random, or -1 if every piece is on the board
+	public int chooseRandomPieceNotPlayed() {
+		int unplayed = this.getUnplayedPieces();
+		if (unplayed == 0) {
+			return -1;
+		}
+		return nthSetBit(unplayed, (int) (Math.random() * Integer.bitCount(unplayed)));
+	}
+
+	//picks an empty square uniformly at random, {-1,-1} is only returned if there are no positions left
+	public int[] chooseRandomPositionNotPlayed() {
+		int empty = this.getEmptySquares();
+		if (empty == 0) {
+			return new int[] {-1, -1};
+		}
+		int square = nthSetBit(empty, (int) (Math.random() * Integer.bitCount(empty)));
+		return new int[] {getRow(square), getColumn(square)};
+	}
+
+	//returns the index of the n-th (zero based) set bit of mask
+	public static int nthSetBit(int mask, int n) {
+		for (int i = 0; i < n; i++) {
+			mask &= mask - 1;
+		}
+		return Integer.numberOfTrailingZeros(mask);
+	}
+
+	//two boards are equal if they hold the same pieces on the same squares
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof QuartoBitBoard)) {
+			return false;
+		}
+		QuartoBitBoard board = (QuartoBitBoard) other;
+		return this.occupied == board.occupied && this.placed == board.placed
+				&& this.tall == board.tall && this.solid == board.solid && this.white == board.white
+				&& this.wood == board.wood && this.round == board.round;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = this.occupied;
+		hash = 31 * hash + this.tall;
+		hash = 31 * hash + this.solid;
+		hash = 31 * hash + this.white;
+		hash = 31 * hash + this.wood;
+		hash = 31 * hash + this.round;
+		return hash;
+	}
+
+	//prints the board out
+	public void printBoardState() {
+		System.out.println("-----------------------------------");
+		for (int row = 0; row < NUMBER_OF_ROWS; row++) {
+			for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+				int pieceID = this.getPieceIdOnPosition(row, column);
+				if (pieceID != -1) {
+					System.out.print(String.format("%5s", Integer.toBinaryString(pieceID)).replace(' ', '0') + "  ");
+				} else {
+					System.out.print("null   ");
+				}
+			}
+			System.out.print("\n");
+		}
+		System.out.println("-----------------------------------");
+	}
+
+}
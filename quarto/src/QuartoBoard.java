@@ -78,6 +78,23 @@ public class QuartoBoard {
 
 	}
 
+	//removes the QuartoPiece object on [row,column], undoing insertPieceOnBoard so a move can be tried in place
+	public boolean removePieceFromBoard(int row, int column) {
+
+		//some error checking
+		if(!this.isSpaceTaken(row, column)) {
+			return false;
+		}
+
+		//update the piece's info
+		this.board[row][column].clearPosition();
+		//update the board
+		this.board[row][column] = null;
+
+		return true;
+
+	}
+
 	//checks if a piece is on the board
 	public boolean isPieceOnBoard(int pieceID) {
 		QuartoPiece piece = this.getPiece(pieceID);
@@ -1,9 +1,28 @@
 public class QuartoCarloAgent extends QuartoAgent {
 
+    //number of threads MonteCarlo searches with
+    private int threads;
+
+    //kept for the whole game so each search can continue from the previous tree
+    private MonteCarlo monteCarlo;
+
+    //cp, playouts and time margin of the search, see SearchParameters
+    private SearchParameters parameters;
+
     //Example AI
     public QuartoCarloAgent(GameClient gameClient, String stateFileName) {
+        this(gameClient, stateFileName, Runtime.getRuntime().availableProcessors());
+    }
+
+    public QuartoCarloAgent(GameClient gameClient, String stateFileName, int threads) {
+        this(gameClient, stateFileName, threads, SearchParameters.load(SearchParameters.DEFAULT_FILE_NAME));
+    }
+
+    public QuartoCarloAgent(GameClient gameClient, String stateFileName, int threads, SearchParameters parameters) {
         // because super calls one of the super class constructors(you can overload constructors), you need to pass the parameters required.
         super(gameClient, stateFileName);
+        this.threads = threads;
+        this.parameters = parameters;
     }
 
     //MAIN METHOD
@@ -23,9 +42,19 @@ public class QuartoCarloAgent extends QuartoAgent {
         if (args.length > 1) {
             stateFileName = args[1];
         }
+        //optional third argument is the number of search threads
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 2) {
+            threads = Integer.parseInt(args[2]);
+        }
+        //optional fourth argument is the search parameters file, e.g. one written by SpsaTuner
+        String parametersFileName = SearchParameters.DEFAULT_FILE_NAME;
+        if (args.length > 3) {
+            parametersFileName = args[3];
+        }
 
         gameClient.connectToServer(ip, 4321);
-        QuartoCarloAgent quartoAgent = new QuartoCarloAgent(gameClient, stateFileName);
+        QuartoCarloAgent quartoAgent = new QuartoCarloAgent(gameClient, stateFileName, threads, SearchParameters.load(parametersFileName));
         quartoAgent.play();
 
         gameClient.closeConnection();
@@ -36,7 +65,7 @@ public class QuartoCarloAgent extends QuartoAgent {
 	 */
     @Override
     protected String pieceSelectionAlgorithm() {	
-		 MonteCarlo mc = new MonteCarlo(this.timeLimitForResponse-1000, 1 / Math.sqrt(2), false);
+		 MonteCarlo mc = this.getMonteCarlo();
 		 String bestAction = mc.UCTSearch(this.quartoBoard, null);
 		 return bestAction; 
     }
@@ -47,11 +76,61 @@ public class QuartoCarloAgent extends QuartoAgent {
      */
     @Override
     protected String moveSelectionAlgorithm(int pieceID) { 
-		 MonteCarlo mc = new MonteCarlo(this.timeLimitForResponse-1000, 1 / Math.sqrt(2), false);
+		 MonteCarlo mc = this.getMonteCarlo();
 		 String bestAction = mc.UCTSearch(this.quartoBoard, pieceID);
 		 return bestAction; 
     }
 
+    //the time limit is only known once the game started, so the search is created on first use
+    private MonteCarlo getMonteCarlo() {
+        if (this.monteCarlo == null) {
+            this.monteCarlo = this.parameters.newMonteCarlo(this.timeLimitForResponse, false);
+            this.monteCarlo.setThreads(this.threads);
+            this.monteCarlo.setTranspositions(true);
+            this.monteCarlo.setLazyBoards(true);
+            this.monteCarlo.setMctsSolver(true);
+            this.monteCarlo.setEndgameSolver(true);
+            this.monteCarlo.setProofNumberSearch(true);
+        }
+        return this.monteCarlo;
+    }
+
+    //move the kept tree along with the game
+    @Override
+    protected void pieceSelected(int pieceID) {
+        if (this.monteCarlo != null) {
+            this.monteCarlo.pieceSelected(pieceID);
+        }
+    }
+
+    @Override
+    protected void movePlayed(int row, int column, int pieceID) {
+        if (this.monteCarlo != null) {
+            this.monteCarlo.movePlayed(row, column);
+        }
+    }
+
+    //the part of timeLimitForResponse the search leaves for the network
+    @Override
+    protected int getTimeMargin() {
+        return this.parameters.getTimeMargin();
+    }
+
+    //grow the tree while the other player thinks, see MonteCarlo.ponder
+    @Override
+    protected void startPondering(Integer pieceID) {
+        if (this.parameters.isPondering()) {
+            this.getMonteCarlo().ponder(new QuartoBitBoard(this.quartoBoard), pieceID);
+        }
+    }
+
+    @Override
+    protected void stopPondering() {
+        if (this.monteCarlo != null) {
+            this.monteCarlo.stopPondering();
+        }
+    }
+
     //loop through board and see if the game is in a won state
     private boolean checkIfGameIsWon() {
 
@@ -0,0 +1,80 @@
+/*
+ * Static tables describing the 12 winning lines of the 5x5 board.
+ *
+ * Lines 0-4 are the rows, 5-9 the columns, 10 the diagonal from [0,0] to
+ * [4,4] and 11 the diagonal from [4,0] to [0,4]. Squares use the same
+ * numbering as QuartoBitBoard (row * 5 + column).
+ *
+ * SQUARE_LINES maps every square to the 2-4 lines going through it, so
+ * checking whether a move won only has to look at those lines.
+ */
+public final class QuartoLines {
+
+	public static final int NUMBER_OF_LINES = 12;
+	public static final int LINE_LENGTH = 5;
+
+	public static final int FIRST_ROW_LINE = 0;
+	public static final int FIRST_COLUMN_LINE = 5;
+	public static final int MAIN_DIAGONAL_LINE = 10;
+	public static final int ANTI_DIAGONAL_LINE = 11;
+
+	//the squares of each line as a bit mask
+	public static final int[] LINE_MASKS = new int[NUMBER_OF_LINES];
+
+	//the squares of each line as square indices
+	public static final int[][] LINE_SQUARES = new int[NUMBER_OF_LINES][LINE_LENGTH];
+
+	//the lines going through each square
+	public static final int[][] SQUARE_LINES = new int[QuartoBitBoard.NUMBER_OF_SQUARES][];
+
+	static {
+		for (int i = 0; i < LINE_LENGTH; i++) {
+			for (int j = 0; j < LINE_LENGTH; j++) {
+				LINE_SQUARES[FIRST_ROW_LINE + i][j] = QuartoBitBoard.toSquare(i, j);
+				LINE_SQUARES[FIRST_COLUMN_LINE + i][j] = QuartoBitBoard.toSquare(j, i);
+			}
+			LINE_SQUARES[MAIN_DIAGONAL_LINE][i] = QuartoBitBoard.toSquare(i, i);
+			LINE_SQUARES[ANTI_DIAGONAL_LINE][i] = QuartoBitBoard.toSquare(LINE_LENGTH - 1 - i, i);
+		}
+
+		int[] linesPerSquare = new int[QuartoBitBoard.NUMBER_OF_SQUARES];
+		for (int line = 0; line < NUMBER_OF_LINES; line++) {
+			for (int square : LINE_SQUARES[line]) {
+				LINE_MASKS[line] |= 1 << square;
+				linesPerSquare[square]++;
+			}
+		}
+
+		for (int square = 0; square < QuartoBitBoard.NUMBER_OF_SQUARES; square++) {
+			SQUARE_LINES[square] = new int[linesPerSquare[square]];
+			int count = 0;
+			for (int line = 0; line < NUMBER_OF_LINES; line++) {
+				if ((LINE_MASKS[line] & (1 << square)) != 0) {
+					SQUARE_LINES[square][count++] = line;
+				}
+			}
+		}
+	}
+
+	private QuartoLines() {
+	}
+
+	public static int rowLine(int row) {
+		return FIRST_ROW_LINE + row;
+	}
+
+	public static int columnLine(int column) {
+		return FIRST_COLUMN_LINE + column;
+	}
+
+	//describes a line the way the server reports wins
+	public static String describe(int line) {
+		if (line < FIRST_COLUMN_LINE) {
+			return "row: " + (line - FIRST_ROW_LINE) + " (zero-indexed)";
+		} else if (line < MAIN_DIAGONAL_LINE) {
+			return "column: " + (line - FIRST_COLUMN_LINE) + " (zero-indexed)";
+		}
+		return "diagonal";
+	}
+
+}
@@ -44,6 +44,13 @@ public class QuartoPiece {
 		this.setInPlay(true);
 	}
 
+	//takes the piece off the board again, undoing setPosition
+	public void clearPosition() {
+		this.row = -1;
+		this.column = -1;
+		this.setInPlay(false);
+	}
+
 	public int getPieceID() {
 		return this.pieceID;
 	}
@@ -25,6 +25,8 @@ public class QuartoServer {
 
 	GameServer gameServer;
 	QuartoBoard quartoBoard;
+	//compact copy of quartoBoard, used to check the lines through the last move
+	QuartoBitBoard quartoBitBoard;
 
 	//The Main method
 	public static void main(String[] args) {
@@ -50,6 +52,7 @@ public class QuartoServer {
 	public QuartoServer(GameServer gameServer, String stateFileName) {
 		this.gameServer = gameServer;
 		this.quartoBoard = new QuartoBoard(NUMBER_OF_ROWS, NUMBER_OF_COLUMNS, NUMBER_OF_PIECES, stateFileName);
+		this.quartoBitBoard = new QuartoBitBoard(this.quartoBoard);
 	}
 
 	//main game loop
@@ -72,8 +75,9 @@ public class QuartoServer {
 
 			//add piece to board
 			this.quartoBoard.insertPieceOnBoard(move[0], move[1], pieceID);
+			this.quartoBitBoard.insertPieceOnBoard(move[0], move[1], pieceID);
 
-			if(this.checkIfGameIsWon()) {
+			if(this.checkIfGameIsWon(move[0], move[1])) {
 				this.gameServer.writeToAllPlayers(GAME_OVER_HEADER + "player " + playerOne + " wins");
 				this.quartoBoard.printBoardState();
 				break;
@@ -171,31 +175,11 @@ public class QuartoServer {
 		return true;
 	}
 
-	//loop through board and see if the game is in a won state
-	private boolean checkIfGameIsWon() {
-
-		//loop through rows
-		for(int i = 0; i < NUMBER_OF_ROWS; i++) {
-			//gameIsWon = this.quartoBoard.checkRow(i);
-			if (this.quartoBoard.checkRow(i)) {
-				System.out.println("Win via row: " + (i) + " (zero-indexed)");
-				return true;
-			}
-
-		}
-		//loop through columns
-		for(int i = 0; i < NUMBER_OF_COLUMNS; i++) {
-			//gameIsWon = this.quartoBoard.checkColumn(i);
-			if (this.quartoBoard.checkColumn(i)) {
-				System.out.println("Win via column: " + (i) + " (zero-indexed)");
-				return true;
-			}
-
-		}
-
-		//check Diagonals
-		if (this.quartoBoard.checkDiagonals()) {
-			System.out.println("Win via diagonal");
+	//see if the move just made on [row,column] won the game, only the lines through that square can have changed
+	private boolean checkIfGameIsWon(int row, int column) {
+		int line = this.quartoBitBoard.getWinningLine(QuartoBitBoard.toSquare(row, column));
+		if (line != -1) {
+			System.out.println("Win via " + QuartoLines.describe(line));
 			return true;
 		}
 
@@ -0,0 +1,141 @@
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/*
+ * The settings of the MonteCarlo agents, kept in a properties file
+ * so SpsaTuner can write what it found and the agents can read it at
+ * startup:
+ * 		cp							the exploration constant of UCB1
+ * 		heavyPlayoutRate			the share of heavy playouts, see
+ * 									MonteCarlo.setHeavyPlayoutRate
+ * 		proofNumberMaxEmptySquares	the most empty squares the proof-number
+ * 									search starts at
+ * 		timeMargin					milliseconds of the server's time limit
+ * 									kept for the network, the search gets
+ * 									the rest
+ * 		pondering					whether the agent searches on the other
+ * 									player's time, see MonteCarlo.ponder;
+ * 									off by default, since it takes the CPU
+ * 									from an opponent on the same host
+ * A missing file or key keeps the default. Heavy playouts default to off,
+ * a rate above 0 should come from SpsaTuner or an EloMatch that accepts H1.
+ */
+public class SearchParameters {
+
+	// the file the agents read when they are given none, in the working directory
+	public static final String DEFAULT_FILE_NAME = "search.params";
+
+	private double cp = 1 / Math.sqrt(2);
+	private double heavyPlayoutRate = 0;
+	private int proofNumberMaxEmptySquares = 12;
+	private int timeMargin = 1000;
+	private boolean pondering = false;
+
+	public double getCp() {
+		return this.cp;
+	}
+
+	public void setCp(double cp) {
+		this.cp = cp;
+	}
+
+	public double getHeavyPlayoutRate() {
+		return this.heavyPlayoutRate;
+	}
+
+	public void setHeavyPlayoutRate(double heavyPlayoutRate) {
+		this.heavyPlayoutRate = heavyPlayoutRate;
+	}
+
+	public int getProofNumberMaxEmptySquares() {
+		return this.proofNumberMaxEmptySquares;
+	}
+
+	public void setProofNumberMaxEmptySquares(int proofNumberMaxEmptySquares) {
+		this.proofNumberMaxEmptySquares = proofNumberMaxEmptySquares;
+	}
+
+	public int getTimeMargin() {
+		return this.timeMargin;
+	}
+
+	public void setTimeMargin(int timeMargin) {
+		this.timeMargin = timeMargin;
+	}
+
+	public boolean isPondering() {
+		return this.pondering;
+	}
+
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+	}
+
+	/*
+	 * a MonteCarlo with these settings that answers within timeLimitForResponse,
+	 * 	the agent switches on everything else it uses
+	 */
+	public MonteCarlo newMonteCarlo(int timeLimitForResponse, boolean symmetry) {
+		MonteCarlo monteCarlo = new MonteCarlo(timeLimitForResponse - this.timeMargin, this.cp, symmetry);
+		monteCarlo.setHeavyPlayoutRate(this.heavyPlayoutRate);
+		monteCarlo.setProofNumberMaxEmptySquares(this.proofNumberMaxEmptySquares);
+		return monteCarlo;
+	}
+
+	// as above for CompactQuartoCarloAgent, which has no proof-number search
+	public CompactMonteCarlo newCompactMonteCarlo(int timeLimitForResponse, boolean symmetry) {
+		CompactMonteCarlo monteCarlo = new CompactMonteCarlo(timeLimitForResponse - this.timeMargin, this.cp, symmetry);
+		monteCarlo.setHeavyPlayoutRate(this.heavyPlayoutRate);
+		return monteCarlo;
+	}
+
+	// the settings in fileName, the defaults if there is no such file
+	public static SearchParameters load(String fileName) {
+		SearchParameters parameters = new SearchParameters();
+		Properties properties = new Properties();
+		try (Reader reader = new FileReader(fileName)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			return parameters;
+		}
+		System.out.println("Search parameters from " + fileName + ": " + properties);
+		parameters.cp = Double.parseDouble(properties.getProperty("cp", String.valueOf(parameters.cp)));
+		parameters.heavyPlayoutRate = Double.parseDouble(properties.getProperty("heavyPlayoutRate", String.valueOf(parameters.heavyPlayoutRate)));
+		parameters.proofNumberMaxEmptySquares = Integer.parseInt(properties.getProperty("proofNumberMaxEmptySquares", String.valueOf(parameters.proofNumberMaxEmptySquares)));
+		parameters.timeMargin = Integer.parseInt(properties.getProperty("timeMargin", String.valueOf(parameters.timeMargin)));
+		parameters.pondering = Boolean.parseBoolean(properties.getProperty("pondering", String.valueOf(parameters.pondering)));
+		return parameters;
+	}
+
+	public void save(String fileName, String comment) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("cp", String.valueOf(this.cp));
+		properties.setProperty("heavyPlayoutRate", String.valueOf(this.heavyPlayoutRate));
+		properties.setProperty("proofNumberMaxEmptySquares", String.valueOf(this.proofNumberMaxEmptySquares));
+		properties.setProperty("timeMargin", String.valueOf(this.timeMargin));
+		properties.setProperty("pondering", String.valueOf(this.pondering));
+		try (Writer writer = new FileWriter(fileName)) {
+			properties.store(writer, comment);
+		}
+	}
+
+	public SearchParameters copy() {
+		SearchParameters copy = new SearchParameters();
+		copy.cp = this.cp;
+		copy.heavyPlayoutRate = this.heavyPlayoutRate;
+		copy.proofNumberMaxEmptySquares = this.proofNumberMaxEmptySquares;
+		copy.timeMargin = this.timeMargin;
+		copy.pondering = this.pondering;
+		return copy;
+	}
+
+	public String toString() {
+		return String.format("cp %.3f, heavyPlayoutRate %.2f, proofNumberMaxEmptySquares %d, timeMargin %d, pondering %b",
+				this.cp, this.heavyPlayoutRate, this.proofNumberMaxEmptySquares, this.timeMargin, this.pondering);
+	}
+
+}
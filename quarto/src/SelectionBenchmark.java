@@ -0,0 +1,222 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/*
+ * Measures how quickly each selection policy (see SelectionPolicy) and final
+ * move rule finds a correct action, with EndgameSolver as the ground truth.
+ *
+ * The positions are taken from game logs like hard1.txt: every board the
+ * agent printed before the server asked it to place a piece (Q2) or to
+ * choose one (Q1). Positions with more than maxEmptySquares empty squares
+ * cannot be solved exactly and are skipped, as are positions where every
+ * action has the same value, since no policy can get those wrong. Every
+ * action of the remaining positions is solved, and a search counts as
+ * correct if the action it returns has the best value.
+ *
+ * Each configuration searches every position single threaded with heavy
+ * playouts and without the solvers. The search is run in steps of STEP
+ * milliseconds on the same tree (UCTSearch continues the kept root), and
+ * the time to the correct action is the time after which every step
+ * returned a correct action. A position that is still wrong after
+ * MAX_STEPS steps counts as missed.
+ *
+ * Usage: java SelectionBenchmark [maxEmptySquares] [log files...]
+ * 	defaults to 11 empty squares and hard1.txt to hard4.txt
+ */
+public class SelectionBenchmark {
+
+	private static final int STEP = 2;
+	private static final int MAX_STEPS = 100;
+
+	private static final String[] NAMES = {
+		"UCB1", "UCB1 max visits", "UCB1 robust-max", "UCB1-Tuned", "PUCT", "Thompson"
+	};
+
+	// a position from a log, piece is the piece to place or -1 if a piece has to be chosen
+	private static class Position {
+		final QuartoBitBoard board;
+		final int piece;
+		// the solved value of every action (square or piece id) for the player to move, WIN/DRAW/LOSS
+		final int[] values = new int[QuartoBitBoard.NUMBER_OF_PIECES];
+		int best = EndgameSolver.LOSS;
+
+		Position(QuartoBitBoard board, int piece) {
+			this.board = board;
+			this.piece = piece;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int maxEmptySquares = args.length > 0 ? Integer.parseInt(args[0]) : 11;
+		String[] files = {"hard1.txt", "hard2.txt", "hard3.txt", "hard4.txt"};
+		if (args.length > 1) {
+			files = new String[args.length - 1];
+			System.arraycopy(args, 1, files, 0, files.length);
+		}
+
+		EndgameSolver solver = new EndgameSolver(22);
+		ArrayList<Position> positions = new ArrayList<Position>();
+		HashSet<Long> seen = new HashSet<Long>();
+		for (String file : files) {
+			for (Position position : readPositions(file)) {
+				int empty = Integer.bitCount(position.board.getEmptySquares());
+				long key = position.board.getHash() ^ (position.piece >= 0 ? Zobrist.PIECE_TO_PLACE[position.piece] : 0);
+				if (empty < 2 || empty > maxEmptySquares || !seen.add(key)) {
+					continue;
+				}
+				if (solve(solver, position)) {
+					positions.add(position);
+				}
+			}
+		}
+		System.out.println(positions.size() + " positions with a wrong action and at most " + maxEmptySquares + " empty squares");
+
+		// the searches print their trees, only the table is wanted here
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+
+		out.println(String.format("%-18s%10s%20s", "policy", "correct", "mean ms to correct"));
+		for (int config = 0; config < NAMES.length; config++) {
+			int correct = 0;
+			long totalTime = 0;
+			for (Position position : positions) {
+				MonteCarlo mc = createSearch(config, STEP);
+				int lastWrong = 0;
+				for (int step = 1; step <= MAX_STEPS; step++) {
+					String action = mc.UCTSearch(position.board, position.piece >= 0 ? position.piece : null);
+					if (position.values[actionIndex(action, position.piece)] != position.best) {
+						lastWrong = step;
+					}
+				}
+				if (lastWrong < MAX_STEPS) {
+					correct++;
+					totalTime += lastWrong * STEP;
+				}
+			}
+			String meanTime = correct == 0 ? "-" : String.valueOf(totalTime / correct);
+			out.println(String.format("%-18s%10s%20s", NAMES[config], correct + "/" + positions.size(), meanTime));
+		}
+		System.setOut(out);
+	}
+
+	private static MonteCarlo createSearch(int config, int timeLimit) {
+		double cp = 1 / Math.sqrt(2);
+		MonteCarlo mc = new MonteCarlo(timeLimit, cp, true);
+		mc.setHeavyPlayouts(true);
+		switch (config) {
+		case 1:
+			mc.setFinalMoveRule(MonteCarlo.MAX_VISITS);
+			break;
+		case 2:
+			mc.setFinalMoveRule(MonteCarlo.ROBUST_MAX);
+			break;
+		case 3:
+			mc.setSelectionPolicy(new Ucb1TunedPolicy());
+			break;
+		case 4:
+			mc.setSelectionPolicy(new PuctPolicy(2));
+			break;
+		case 5:
+			mc.setSelectionPolicy(new ThompsonPolicy());
+			break;
+		default:
+			break;
+		}
+		return mc;
+	}
+
+	/*
+	 * solves every action of the position, returns false if they all have
+	 * 	the same value
+	 */
+	private static boolean solve(EndgameSolver solver, Position position) {
+		QuartoBitBoard board = position.board;
+		QuartoBitBoard next = new QuartoBitBoard();
+		int actions;
+		if (position.piece >= 0) {
+			actions = board.getEmptySquares();
+			for (int squares = actions; squares != 0; squares &= squares - 1) {
+				int square = Integer.numberOfTrailingZeros(squares);
+				next.copyFrom(board);
+				next.insertPieceOnSquare(square, position.piece);
+				if (next.checkLastMove(square)) {
+					position.values[square] = EndgameSolver.WIN;
+				} else if (next.checkIfBoardIsFull()) {
+					position.values[square] = EndgameSolver.DRAW;
+				} else {
+					// the same player hands over the next piece
+					position.values[square] = solver.solveSelection(next, Long.MAX_VALUE);
+				}
+			}
+		} else {
+			actions = board.getUnplayedPieces();
+			for (int pieces = actions; pieces != 0; pieces &= pieces - 1) {
+				int piece = Integer.numberOfTrailingZeros(pieces);
+				// the other player places it
+				position.values[piece] = -solver.solvePlacement(board, piece, Long.MAX_VALUE);
+			}
+		}
+
+		boolean mixed = false;
+		int first = position.values[Integer.numberOfTrailingZeros(actions)];
+		for (int rest = actions; rest != 0; rest &= rest - 1) {
+			int value = position.values[Integer.numberOfTrailingZeros(rest)];
+			position.best = Math.max(position.best, value);
+			mixed |= value != first;
+		}
+		return mixed;
+	}
+
+	private static int actionIndex(String action, int piece) {
+		if (piece >= 0) {
+			String[] move = action.split(",");
+			return QuartoBitBoard.toSquare(Integer.parseInt(move[0]), Integer.parseInt(move[1]));
+		}
+		return Integer.parseInt(action, 2);
+	}
+
+	/*
+	 * reads the positions the agent was asked about in a log: the last board
+	 * 	printed before each Q1 or Q2 message of the server
+	 */
+	private static ArrayList<Position> readPositions(String file) throws IOException {
+		ArrayList<Position> positions = new ArrayList<Position>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			QuartoBitBoard board = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("-----")) {
+					// a board follows, closed by another line of dashes
+					board = new QuartoBitBoard();
+					for (int row = 0; row < QuartoBitBoard.NUMBER_OF_ROWS; row++) {
+						String[] cells = reader.readLine().trim().split("\\s+");
+						for (int column = 0; column < QuartoBitBoard.NUMBER_OF_COLUMNS; column++) {
+							if (!cells[column].equals("null")) {
+								board.insertPieceOnBoard(row, column, Integer.parseInt(cells[column], 2));
+							}
+						}
+					}
+					reader.readLine();
+				} else if (board != null && line.contains("Q1:")) {
+					positions.add(new Position(board, -1));
+				} else if (board != null && line.contains("Q2:")) {
+					String piece = line.substring(line.indexOf("Q2:") + 3).trim().split("\\s+")[0];
+					positions.add(new Position(board, Integer.parseInt(piece, 2)));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return positions;
+	}
+
+}
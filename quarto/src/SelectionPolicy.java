@@ -0,0 +1,131 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Scores the children of a node while MonteCarlo searches, BestChild
+ * descends into the child with the highest score.
+ *
+ * The statistics are passed as plain numbers so a policy does not depend on
+ * how the tree stores them:
+ * 		mean		Q/N of the child from the point of view of the player
+ * 					choosing it, in [-1, 1] (blended with the AMAF value
+ * 					when RAVE is on)
+ * 		n			N of the child, virtual loss included
+ * 		decisive	how many of the n results were a win or a loss rather
+ * 					than a draw, so the results' second moment is decisive / n
+ * 		simulations	N of the parent
+ * 		prior		heuristic probability that the child is the best action
+ *
+ * Policies are shared by all search threads and must be thread safe.
+ */
+public interface SelectionPolicy {
+
+	double score(double mean, int n, int decisive, int simulations, double prior);
+
+}
+
+/*
+ * UCB1, the BestChild equation from the paper:
+ * 		mean + cp * sqrt(2 * ln(N(v)) / N(c))
+ */
+class Ucb1Policy implements SelectionPolicy {
+
+	private final double cp;
+
+	public Ucb1Policy(double cp) {
+		this.cp = cp;
+	}
+
+	public double score(double mean, int n, int decisive, int simulations, double prior) {
+		return mean + cp * Math.sqrt(2 * Math.log(simulations) / n);
+	}
+
+	public String toString() {
+		return "UCB1(cp=" + cp + ")";
+	}
+}
+
+/*
+ * UCB1-Tuned (Auer et al.): the exploration term is scaled by an upper bound
+ * 	on the variance of the child's results, so children whose results
+ * 	barely vary (mostly draws) are explored less. With the results scaled
+ * 	to [0, 1]:
+ * 		mean + sqrt(ln(N(v)) / N(c) * min(1/4, variance + sqrt(2 * ln(N(v)) / N(c))))
+ */
+class Ucb1TunedPolicy implements SelectionPolicy {
+
+	public double score(double mean, int n, int decisive, int simulations, double prior) {
+		double logSimulations = Math.log(simulations);
+		// a result x in [-1, 1] is (x + 1) / 2 in [0, 1], which divides the variance by 4
+		double variance = ((double) decisive / n - mean * mean) / 4;
+		double bound = Math.min(0.25, variance + Math.sqrt(2 * logSimulations / n));
+		return (mean + 1) / 2 + Math.sqrt(logSimulations / n * bound);
+	}
+
+	public String toString() {
+		return "UCB1-Tuned";
+	}
+}
+
+/*
+ * PUCT, the AlphaZero selection rule, with the heuristic prior of
+ * 	MonteCarlo instead of a network:
+ * 		mean + c * prior * sqrt(N(v)) / (1 + N(c))
+ * 	children the heuristic considers blunders are explored far less
+ */
+class PuctPolicy implements SelectionPolicy {
+
+	private final double c;
+
+	public PuctPolicy(double c) {
+		this.c = c;
+	}
+
+	public double score(double mean, int n, int decisive, int simulations, double prior) {
+		return mean + c * prior * Math.sqrt(simulations) / (1 + n);
+	}
+
+	public String toString() {
+		return "PUCT(c=" + c + ")";
+	}
+}
+
+/*
+ * Thompson sampling: each result counts as a Bernoulli trial, a win as a
+ * 	success, a loss as a failure and a draw as half of each. The score is a
+ * 	sample from the Beta posterior of the child's success rate
+ * 		Beta(1 + (N + Q) / 2, 1 + (N - Q) / 2)
+ * 	so a child is searched with the probability that it is the best one.
+ * 	There is no exploration constant.
+ */
+class ThompsonPolicy implements SelectionPolicy {
+
+	public double score(double mean, int n, int decisive, int simulations, double prior) {
+		double successes = n * (1 + mean) / 2;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		double x = gamma(1 + successes, random);
+		double y = gamma(1 + n - successes, random);
+		return x / (x + y);
+	}
+
+	// Marsaglia and Tsang's method, shape must be at least 1
+	private static double gamma(double shape, ThreadLocalRandom random) {
+		double d = shape - 1.0 / 3;
+		double c = 1 / Math.sqrt(9 * d);
+		while (true) {
+			double x, v;
+			do {
+				x = random.nextGaussian();
+				v = 1 + c * x;
+			} while (v <= 0);
+			v = v * v * v;
+			double u = random.nextDouble();
+			if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+				return d * v;
+			}
+		}
+	}
+
+	public String toString() {
+		return "Thompson";
+	}
+}
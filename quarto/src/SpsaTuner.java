@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ToDoubleFunction;
+
+/*
+ * Tunes the SearchParameters of a MonteCarlo agent by self-play with SPSA
+ * (simultaneous perturbation stochastic approximation), which only needs
+ * the result of a match between two perturbed settings per step, however
+ * many parameters there are.
+ *
+ * Each iteration k draws for every pair of games a random direction delta
+ * (every parameter +1 or -1) and plays a colour-balanced pair (see
+ * MatchRunner) between
+ * 		theta + c(k) * delta	and		theta - c(k) * delta
+ * The pair's result r, from -1 (the minus side won both) to 1, says which
+ * way along delta the agent got stronger, and theta moves there:
+ * 		theta += R(k) * c(k) * mean(r * delta)
+ * where c(k) = c / (k + 1)^0.101 and R(k) = R * ((A + 1) / (A + k + 1))^0.602
+ * are the usual SPSA schedules, with c set per parameter to a change that
+ * matters and A a tenth of the iterations. A pair per thread is played in
+ * every iteration and the mean is taken over them.
+ *
+ * The tuned parameters are cp, the heavy playout rate (the mix of the two
+ * playout policies) and the number of empty squares the proof-number
+ * search starts at, which is rounded when an agent is built. theta starts
+ * from the parameters file and is written back to it after every
+ * iteration, so the agents load the last estimate at startup and an
+ * interrupted run can be continued.
+ *
+ * Usage: java SpsaTuner [iterations] [moveTime] [threads] [agent] [parameters file] [start files or directories...]
+ * 	defaults to 200 iterations, 200 ms, a thread per processor, the
+ * 	symmetry agent, search.params and the empty board
+ */
+public class SpsaTuner {
+
+	// R, the share of c a parameter moves by after a batch of pairs that all won for the same side
+	private static final double LEARNING_RATE = 0.2;
+
+	private static final double ALPHA = 0.602;
+	private static final double GAMMA = 0.101;
+
+	// a tuned parameter, its bounds and its perturbation c
+	private static class Parameter {
+		final String name;
+		final double min;
+		final double max;
+		final double c;
+		final ToDoubleFunction<SearchParameters> getter;
+		final ObjDoubleConsumer<SearchParameters> setter;
+
+		Parameter(String name, double min, double max, double c,
+				ToDoubleFunction<SearchParameters> getter, ObjDoubleConsumer<SearchParameters> setter) {
+			this.name = name;
+			this.min = min;
+			this.max = max;
+			this.c = c;
+			this.getter = getter;
+			this.setter = setter;
+		}
+	}
+
+	private static final Parameter[] PARAMETERS = {
+		new Parameter("cp", 0.1, 2, 0.15, SearchParameters::getCp, SearchParameters::setCp),
+		new Parameter("heavyPlayoutRate", 0, 1, 0.15, SearchParameters::getHeavyPlayoutRate, SearchParameters::setHeavyPlayoutRate),
+		new Parameter("proofNumberMaxEmptySquares", 6, 16, 1.5, SearchParameters::getProofNumberMaxEmptySquares,
+				(parameters, value) -> parameters.setProofNumberMaxEmptySquares((int) Math.round(value))),
+	};
+
+	private final String agent;
+	private final int moveTime;
+	private final int threads;
+	private final String[] starts;
+	private final Random random = new Random();
+
+	public SpsaTuner(String agent, int moveTime, int threads, String[] startFiles) {
+		if (!agent.equals("carlo") && !agent.equals("symmetry")) {
+			throw new IllegalArgumentException("Only the MonteCarlo agents carlo and symmetry take search parameters");
+		}
+		this.agent = agent;
+		this.moveTime = moveTime;
+		this.threads = threads;
+		this.starts = startFiles.length == 0 ? new String[] {null} : startFiles;
+	}
+
+	/*
+	 * runs the iterations from the parameters in fileName and saves theta
+	 * 	there after each one, returns the final parameters
+	 */
+	public SearchParameters tune(int iterations, String fileName) throws IOException {
+		SearchParameters base = SearchParameters.load(fileName);
+		double[] theta = new double[PARAMETERS.length];
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			theta[i] = PARAMETERS[i].getter.applyAsDouble(base);
+		}
+
+		PrintStream out = MatchRunner.silenceOutput();
+		ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+		int pairs = 0;
+		try {
+			double a = iterations / 10.0;
+			for (int k = 0; k < iterations; k++) {
+				double ck = 1 / Math.pow(k + 1, GAMMA);
+				double rk = LEARNING_RATE * Math.pow((a + 1) / (a + k + 1), ALPHA);
+
+				List<int[]> deltas = new ArrayList<int[]>();
+				List<Callable<Integer>> games = new ArrayList<Callable<Integer>>();
+				for (int j = 0; j < this.threads; j++) {
+					int[] delta = new int[PARAMETERS.length];
+					double[] plus = new double[PARAMETERS.length];
+					double[] minus = new double[PARAMETERS.length];
+					for (int i = 0; i < PARAMETERS.length; i++) {
+						delta[i] = this.random.nextBoolean() ? 1 : -1;
+						plus[i] = clamp(i, theta[i] + ck * PARAMETERS[i].c * delta[i]);
+						minus[i] = clamp(i, theta[i] - ck * PARAMETERS[i].c * delta[i]);
+					}
+					deltas.add(delta);
+					games.add(pairTask(toParameters(base, plus), toParameters(base, minus), this.starts[pairs++ % this.starts.length]));
+				}
+
+				double[] step = new double[PARAMETERS.length];
+				int total = 0;
+				List<Future<Integer>> results = pool.invokeAll(games);
+				for (int j = 0; j < results.size(); j++) {
+					int result = results.get(j).get();
+					total += result;
+					for (int i = 0; i < PARAMETERS.length; i++) {
+						step[i] += result / 2.0 * deltas.get(j)[i] / results.size();
+					}
+				}
+				for (int i = 0; i < PARAMETERS.length; i++) {
+					theta[i] = clamp(i, theta[i] + rk * ck * PARAMETERS[i].c * step[i]);
+				}
+
+				SearchParameters tuned = toParameters(base, theta);
+				tuned.save(fileName, "SpsaTuner, " + (k + 1) + " iterations of " + this.agent + " self-play at " + this.moveTime + " ms");
+				out.println(String.format("iteration %d: plus side %+d over %d pairs, %s", k + 1, total, results.size(), describe(theta)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			System.setOut(out);
+		}
+		return toParameters(base, theta);
+	}
+
+	// a pair between plus and minus from start, returns the points of plus minus those of minus, -2 to 2
+	private Callable<Integer> pairTask(SearchParameters plus, SearchParameters minus, final String start) {
+		final MatchRunner runner = new MatchRunner(MatchRunner.agentFactory(this.agent, plus),
+				MatchRunner.agentFactory(this.agent, minus), this.moveTime, 1);
+		return () -> runner.playGame(start, true) + runner.playGame(start, false);
+	}
+
+	private static double clamp(int parameter, double value) {
+		return Math.max(PARAMETERS[parameter].min, Math.min(PARAMETERS[parameter].max, value));
+	}
+
+	private static SearchParameters toParameters(SearchParameters base, double[] theta) {
+		SearchParameters parameters = base.copy();
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			PARAMETERS[i].setter.accept(parameters, theta[i]);
+		}
+		return parameters;
+	}
+
+	private static String describe(double[] theta) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < PARAMETERS.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(String.format("%s %.3f", PARAMETERS[i].name, theta[i]));
+		}
+		return builder.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int moveTime = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		String agent = args.length > 3 ? args[3] : "symmetry";
+		String fileName = args.length > 4 ? args[4] : SearchParameters.DEFAULT_FILE_NAME;
+		String[] startFiles = new String[0];
+		if (args.length > 5) {
+			startFiles = EloMatch.findStartFiles(Arrays.copyOfRange(args, 5, args.length));
+		}
+
+		SearchParameters tuned = new SpsaTuner(agent, moveTime, threads, startFiles).tune(iterations, fileName);
+		System.out.println("Tuned " + agent + ": " + tuned + ", saved to " + fileName);
+	}
+
+}
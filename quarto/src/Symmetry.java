@@ -0,0 +1,279 @@
+/*
+ * Symmetries of the 5x5 board, computed from precomputed square
+ * permutation tables instead of building rotated and mirrored boards.
+ *
+ * The board has the 8 symmetries of the square (4 rotations and 4
+ * reflections), all of which map rows, columns and diagonals onto lines.
+ * PERMUTATIONS[g][square] is the square that square is moved to by
+ * transform g. To move a whole 25-bit square mask at once, CHUNKS[g][k]
+ * holds the image of every value of byte k of the mask, so a mask is
+ * transformed with 4 table lookups.
+ *
+ * The canonical key of a position is the smallest of its 8 transformed
+ * (occupied, characteristic masks) tuples, hashed to 64 bits. Symmetric
+ * positions get the same key and computing it allocates nothing. A piece
+ * waiting to be placed is stored as an extra bit (PIECE_IN_HAND) which the
+ * transforms leave alone.
+ *
+ * Positions are also equivalent under the piece attributes: flipping one
+ * characteristic of every piece (tall <-> short, ...) or swapping two
+ * characteristics keeps exactly the same lines winning, which is a group of
+ * 2^5 * 5! transforms. Flipping characteristic i turns its mask v into
+ * v ^ occupied, so min(v, v ^ occupied) does not depend on the flip, and
+ * sorting the five normalised masks removes the order of the
+ * characteristics. The attribute keys do this for each of the 8 board
+ * transforms and keep the smallest tuple, which folds all
+ * 8 * 2^5 * 5! symmetries without enumerating them.
+ */
+public final class Symmetry {
+
+	public static final int NUMBER_OF_TRANSFORMS = 8;
+
+	//bit used for the piece waiting to be placed, past the squares so the transforms do not move it
+	public static final int PIECE_IN_HAND = 1 << QuartoBitBoard.NUMBER_OF_SQUARES;
+
+	public static final int[][] PERMUTATIONS = new int[NUMBER_OF_TRANSFORMS][QuartoBitBoard.NUMBER_OF_SQUARES];
+
+	private static final int[][][] CHUNKS = new int[NUMBER_OF_TRANSFORMS][4][256];
+
+	static {
+		int last = QuartoBitBoard.NUMBER_OF_ROWS - 1;
+		for (int row = 0; row < QuartoBitBoard.NUMBER_OF_ROWS; row++) {
+			for (int column = 0; column < QuartoBitBoard.NUMBER_OF_COLUMNS; column++) {
+				int square = QuartoBitBoard.toSquare(row, column);
+				PERMUTATIONS[0][square] = square;
+				//rotations
+				PERMUTATIONS[1][square] = QuartoBitBoard.toSquare(column, last - row);
+				PERMUTATIONS[2][square] = QuartoBitBoard.toSquare(last - row, last - column);
+				PERMUTATIONS[3][square] = QuartoBitBoard.toSquare(last - column, row);
+				//reflections
+				PERMUTATIONS[4][square] = QuartoBitBoard.toSquare(row, last - column);
+				PERMUTATIONS[5][square] = QuartoBitBoard.toSquare(last - row, column);
+				PERMUTATIONS[6][square] = QuartoBitBoard.toSquare(column, row);
+				PERMUTATIONS[7][square] = QuartoBitBoard.toSquare(last - column, last - row);
+			}
+		}
+
+		//bits past the last square are not moved
+		for (int g = 0; g < NUMBER_OF_TRANSFORMS; g++) {
+			for (int chunk = 0; chunk < 4; chunk++) {
+				for (int value = 0; value < 256; value++) {
+					int image = 0;
+					for (int bit = 0; bit < 8; bit++) {
+						if ((value & (1 << bit)) != 0) {
+							int square = chunk * 8 + bit;
+							image |= 1 << (square < QuartoBitBoard.NUMBER_OF_SQUARES ? PERMUTATIONS[g][square] : square);
+						}
+					}
+					CHUNKS[g][chunk][value] = image;
+				}
+			}
+		}
+	}
+
+	private Symmetry() {
+	}
+
+	//applies transform g to a square mask
+	public static int transform(int g, int mask) {
+		int[][] chunks = CHUNKS[g];
+		return chunks[0][mask & 0xFF] | chunks[1][(mask >>> 8) & 0xFF]
+				| chunks[2][(mask >>> 16) & 0xFF] | chunks[3][mask >>> 24];
+	}
+
+	//canonical key of the position on the board
+	public static long canonicalKey(QuartoBitBoard board) {
+		return canonicalKey(board, -1, false);
+	}
+
+	//canonical key of the position with piece waiting to be placed (-1 for none), attributes also folds the piece attributes
+	public static long canonicalKey(QuartoBitBoard board, int piece, boolean attributes) {
+		int bit = piece == -1 ? 0 : PIECE_IN_HAND;
+		return maskKey(board, bit, piece, attributes);
+	}
+
+	//canonical key of the position after piece is placed on square, the board itself is not changed
+	public static long canonicalKey(QuartoBitBoard board, int square, int piece) {
+		return canonicalKey(board, square, piece, false);
+	}
+
+	public static long canonicalKey(QuartoBitBoard board, int square, int piece, boolean attributes) {
+		return maskKey(board, 1 << square, piece, attributes);
+	}
+
+	//adds piece to the masks on bit, which is either a square or PIECE_IN_HAND
+	private static long maskKey(QuartoBitBoard board, int bit, int piece, boolean attributes) {
+		int occupied = board.getOccupiedSquares() | bit;
+		int tall = board.getCharacteristicMask(0) | ((piece & 16) != 0 ? bit : 0);
+		int solid = board.getCharacteristicMask(1) | ((piece & 8) != 0 ? bit : 0);
+		int white = board.getCharacteristicMask(2) | ((piece & 4) != 0 ? bit : 0);
+		int wood = board.getCharacteristicMask(3) | ((piece & 2) != 0 ? bit : 0);
+		int round = board.getCharacteristicMask(4) | ((piece & 1) != 0 ? bit : 0);
+		if (attributes) {
+			return attributeCanonicalKey(occupied, tall, solid, white, wood, round);
+		}
+		return canonicalKey(occupied, tall, solid, white, wood, round);
+	}
+
+	//smallest of the 8 transformed tuples, compared in order, hashed to 64 bits
+	public static long canonicalKey(int occupied, int tall, int solid, int white, int wood, int round) {
+		int bestOccupied = occupied, bestTall = tall, bestSolid = solid, bestWhite = white, bestWood = wood, bestRound = round;
+
+		for (int g = 1; g < NUMBER_OF_TRANSFORMS; g++) {
+			int o = transform(g, occupied);
+			if (o > bestOccupied) continue;
+			int t = transform(g, tall);
+			int s = transform(g, solid);
+			int w = transform(g, white);
+			int d = transform(g, wood);
+			int r = transform(g, round);
+			if (o < bestOccupied || isSmaller(t, s, w, d, r, bestTall, bestSolid, bestWhite, bestWood, bestRound)) {
+				bestOccupied = o;
+				bestTall = t;
+				bestSolid = s;
+				bestWhite = w;
+				bestWood = d;
+				bestRound = r;
+			}
+		}
+
+		return hash(bestOccupied, bestTall, bestSolid, bestWhite, bestWood, bestRound);
+	}
+
+	/*
+	 * same as canonicalKey, but each transformed characteristic mask v is
+	 * replaced by min(v, v ^ occupied) and the five masks are sorted, so
+	 * flipped and permuted characteristics give the same tuple
+	 */
+	public static long attributeCanonicalKey(int occupied, int tall, int solid, int white, int wood, int round) {
+		int bestOccupied = Integer.MAX_VALUE, b0 = 0, b1 = 0, b2 = 0, b3 = 0, b4 = 0;
+
+		for (int g = 0; g < NUMBER_OF_TRANSFORMS; g++) {
+			int o = transform(g, occupied);
+			if (o > bestOccupied) continue;
+			int a = transform(g, tall);
+			int b = transform(g, solid);
+			int c = transform(g, white);
+			int d = transform(g, wood);
+			int e = transform(g, round);
+			a = Math.min(a, a ^ o);
+			b = Math.min(b, b ^ o);
+			c = Math.min(c, c ^ o);
+			d = Math.min(d, d ^ o);
+			e = Math.min(e, e ^ o);
+
+			//sorting network for 5 values
+			int t;
+			if (a > b) { t = a; a = b; b = t; }
+			if (d > e) { t = d; d = e; e = t; }
+			if (c > e) { t = c; c = e; e = t; }
+			if (c > d) { t = c; c = d; d = t; }
+			if (b > e) { t = b; b = e; e = t; }
+			if (a > d) { t = a; a = d; d = t; }
+			if (a > c) { t = a; a = c; c = t; }
+			if (b > d) { t = b; b = d; d = t; }
+			if (b > c) { t = b; b = c; c = t; }
+
+			if (o < bestOccupied || isSmaller(a, b, c, d, e, b0, b1, b2, b3, b4)) {
+				bestOccupied = o;
+				b0 = a;
+				b1 = b;
+				b2 = c;
+				b3 = d;
+				b4 = e;
+			}
+		}
+
+		return hash(bestOccupied, b0, b1, b2, b3, b4);
+	}
+
+	private static boolean isSmaller(int t, int s, int w, int d, int r, int bt, int bs, int bw, int bd, int br) {
+		if (t != bt) return t < bt;
+		if (s != bs) return s < bs;
+		if (w != bw) return w < bw;
+		if (d != bd) return d < bd;
+		return r < br;
+	}
+
+	static long hash(int a, int b, int c, int d, int e, int f) {
+		long h = a;
+		h = h * 0x9E3779B97F4A7C15L + b;
+		h = h * 0x9E3779B97F4A7C15L + c;
+		h = h * 0x9E3779B97F4A7C15L + d;
+		h = h * 0x9E3779B97F4A7C15L + e;
+		h = h * 0x9E3779B97F4A7C15L + f;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	/*
+	 * returns the empty squares that lead to distinct positions when piece is
+	 * placed on them, keeping the first square (in board order) of each group
+	 * of symmetric moves. Duplicates are found by probing a small hash set
+	 * of canonical keys.
+	 */
+	public static int distinctMoves(QuartoBitBoard board, int piece) {
+		return distinctMoves(board, piece, false);
+	}
+
+	public static int distinctMoves(QuartoBitBoard board, int piece, boolean attributes) {
+		return distinctMoves(board, piece, attributes, new long[64]);
+	}
+
+	//as above with seen, 64 slots that are cleared first, as the hash set so nothing is allocated
+	public static int distinctMoves(QuartoBitBoard board, int piece, boolean attributes, long[] seen) {
+		java.util.Arrays.fill(seen, 0L);
+		int moves = 0;
+		int empty = board.getEmptySquares();
+		while (empty != 0) {
+			int square = Integer.numberOfTrailingZeros(empty);
+			empty &= empty - 1;
+
+			long key = canonicalKey(board, square, piece, attributes);
+			if (add(seen, key)) {
+				moves |= 1 << square;
+			}
+		}
+		return moves;
+	}
+
+	/*
+	 * returns the unplayed pieces that lead to distinct positions when handed
+	 * over, keeping the lowest piece id of each group. Only the attribute
+	 * symmetries can make two pieces equivalent.
+	 */
+	public static int distinctPieces(QuartoBitBoard board) {
+		long[] seen = new long[64];
+		int pieces = 0;
+		int unplayed = board.getUnplayedPieces();
+		while (unplayed != 0) {
+			int piece = Integer.numberOfTrailingZeros(unplayed);
+			unplayed &= unplayed - 1;
+
+			long key = canonicalKey(board, piece, true);
+			if (add(seen, key)) {
+				pieces |= 1 << piece;
+			}
+		}
+		return pieces;
+	}
+
+	//adds key to an open addressing set, returns false if it was already there (0 marks an empty slot)
+	static boolean add(long[] set, long key) {
+		if (key == 0) {
+			key = 1;
+		}
+		int mask = set.length - 1;
+		int index = (int) key & mask;
+		while (set[index] != 0) {
+			if (set[index] == key) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		set[index] = key;
+		return true;
+	}
+
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Bounded transposition table for the UCT tree, mapping a Zobrist key to
+ * the node already created for that state.
+ *
+ * The table is a fixed power-of-two array indexed by the low bits of the
+ * key and a new entry simply replaces whatever was in its slot, so the
+ * table itself never grows. Losing an entry only means a transposition is
+ * searched twice. The slots hold the nodes themselves, not indices, since
+ * the tree is made of Node objects: the table keeps every node in it
+ * alive, so MonteCarlo must clear or refill it whenever it drops part of
+ * the tree (see MonteCarlo.releaseDropped).
+ *
+ * Threads sharing a tree may put and get concurrently. The slots are an
+ * AtomicReferenceArray, so a node found by get() was fully published by
+ * put(), key included; get() compares that key, so a slot overwritten in
+ * between can only cause a miss, never a wrong node.
+ */
+public class TranspositionTable {
+
+	private final AtomicReferenceArray<Node> nodes;
+	private final int log2Size;
+	private final int mask;
+
+	//the table has 2^log2Size slots
+	public TranspositionTable(int log2Size) {
+		int size = 1 << log2Size;
+		this.nodes = new AtomicReferenceArray<Node>(size);
+		this.log2Size = log2Size;
+		this.mask = size - 1;
+	}
+
+	public int getLog2Size() {
+		return this.log2Size;
+	}
+
+	//returns the node stored for key, or null
+	public Node get(long key) {
+		Node node = this.nodes.get((int) key & this.mask);
+		if (node == null || node.getKey() != key) {
+			return null;
+		}
+		return node;
+	}
+
+	//the node's key must be set before it is put
+	public void put(long key, Node node) {
+		this.nodes.set((int) key & this.mask, node);
+	}
+
+	//empties the table for a new tree, no thread may be using it meanwhile
+	public void clear() {
+		for (int i = 0; i < this.nodes.length(); i++) {
+			this.nodes.lazySet(i, null);
+		}
+	}
+
+}
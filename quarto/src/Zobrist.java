@@ -0,0 +1,44 @@
+/*
+ * Random keys for Zobrist hashing of Quarto positions.
+ *
+ * A board hashes to the XOR of SQUARES[square][piece] over its pieces,
+ * which QuartoBitBoard keeps up to date as pieces are inserted. A search
+ * state adds the piece that has to be placed (if any) and the player to
+ * act, see key().
+ */
+public final class Zobrist {
+
+	public static final long[][] SQUARES = new long[QuartoBitBoard.NUMBER_OF_SQUARES][QuartoBitBoard.NUMBER_OF_PIECES];
+	public static final long[] PIECE_TO_PLACE = new long[QuartoBitBoard.NUMBER_OF_PIECES];
+	public static final long OTHER_PLAYER;
+
+	static {
+		//fixed seed so keys are the same in every run
+		FastRandom random = new FastRandom(0x5175A27L);
+		for (int square = 0; square < QuartoBitBoard.NUMBER_OF_SQUARES; square++) {
+			for (int piece = 0; piece < QuartoBitBoard.NUMBER_OF_PIECES; piece++) {
+				SQUARES[square][piece] = random.nextLong();
+			}
+		}
+		for (int piece = 0; piece < QuartoBitBoard.NUMBER_OF_PIECES; piece++) {
+			PIECE_TO_PLACE[piece] = random.nextLong();
+		}
+		OTHER_PLAYER = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	//key of a state where player still has to choose a piece (piece is -1) or has to place piece
+	public static long key(QuartoBitBoard board, int piece, boolean player) {
+		long key = board.getHash();
+		if (piece != -1) {
+			key ^= PIECE_TO_PLACE[piece];
+		}
+		if (!player) {
+			key ^= OTHER_PLAYER;
+		}
+		return key;
+	}
+
+}